@@ -0,0 +1,93 @@
+package com.hmdp.config;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IShopService;
+import com.hmdp.utils.BloomFilter;
+import com.hmdp.utils.BroadcastBloomFilter;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.IdCursorScanner;
+import com.hmdp.utils.LocalBloomFilter;
+import com.hmdp.utils.RedisBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 店铺、笔记 id 的布隆过滤器配置
+ * hmdp.bloom.mode=local 时每个节点在 JVM 内各自维护位图（新增的 id 通过发布订阅同步到所有节点），=redis 时多个节点共享 Redis 中的位图
+ */
+@Slf4j
+@Configuration
+public class BloomFilterConfig {
+
+    @Value("${hmdp.bloom.mode:local}")
+    private String mode;
+    @Value("${hmdp.bloom.expected-insertions:1000000}")
+    private long expectedInsertions;
+    @Value("${hmdp.bloom.fpp:0.01}")
+    private double fpp;
+
+    @Bean
+    public BloomFilter shopBloomFilter(StringRedisTemplate template, RedisMessageListenerContainer listenerContainer) {
+        return create(template, listenerContainer, BLOOM_SHOP_KEY);
+    }
+
+    @Bean
+    public BloomFilter blogBloomFilter(StringRedisTemplate template, RedisMessageListenerContainer listenerContainer) {
+        return create(template, listenerContainer, BLOOM_BLOG_KEY);
+    }
+
+    /**
+     * 启动后从数据库分批加载已有 id，加载完成后才开始拦截
+     */
+    @Bean
+    public ApplicationRunner bloomFilterLoader(BloomFilter shopBloomFilter, BloomFilter blogBloomFilter,
+                                               IShopService shopService, IBlogService blogService,
+                                               CacheClient cacheClient) {
+        return args -> {
+            load(shopBloomFilter, shopService, Shop::getId);
+            load(blogBloomFilter, blogService, Blog::getId);
+            //店铺缓存查询前先经过布隆过滤器
+            cacheClient.registerBloomFilter(CACHE_SHOP_KEY, shopBloomFilter);
+        };
+    }
+
+    private BloomFilter create(StringRedisTemplate template, RedisMessageListenerContainer listenerContainer, String key) {
+        if ("redis".equalsIgnoreCase(mode)) {
+            return new RedisBloomFilter(template, key, expectedInsertions, fpp);
+        }
+        //先订阅再加载，加载期间其他节点新增的 id 不会丢
+        return new BroadcastBloomFilter(new LocalBloomFilter(expectedInsertions, fpp),
+                template, listenerContainer, BLOOM_ADD_CHANNEL + key);
+    }
+
+    //按 id 游标分批查询（只查 id 列），避免一次把整张表读进内存
+    private <T> void load(BloomFilter filter, IService<T> service, Function<T, Long> idGetter) {
+        if (filter instanceof RedisBloomFilter && ((RedisBloomFilter) filter).isLoaded()) {
+            //共享位图已被其他节点完整加载过，新增的 id 在保存时会增量写入
+            filter.markReady();
+            return;
+        }
+        long count = IdCursorScanner.scan(service.getBaseMapper(), new QueryWrapper<T>().select("id"), idGetter,
+                rows -> filter.putAll(rows.stream().map(idGetter).collect(Collectors.toList())));
+        if (filter instanceof RedisBloomFilter) {
+            //全部写入后才写完成标记，加载中途失败的位图不会被其他节点当作完整的
+            ((RedisBloomFilter) filter).markLoaded();
+        }
+        filter.markReady();
+        log.info("布隆过滤器加载完成，共 {} 个id", count);
+    }
+}
@@ -0,0 +1,35 @@
+package com.hmdp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 业务线程池配置
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * 店铺详情并行查询的线程池
+     * 有界队列，满了直接拒绝（对应部分按缺失返回），不会拖垮调用线程
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor shopDetailExecutor(@Value("${hmdp.shop-detail.threads:16}") int threads,
+                                                 @Value("${hmdp.shop-detail.queue-capacity:200}") int queueCapacity) {
+        AtomicInteger threadNo = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "shop-detail-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
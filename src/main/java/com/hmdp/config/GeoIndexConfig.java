@@ -0,0 +1,83 @@
+package com.hmdp.config;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IShopService;
+import com.hmdp.utils.IdCursorScanner;
+import com.hmdp.utils.ShopGeoIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.hmdp.utils.RedisConstants.SHOP_CHANGE_CHANNEL;
+
+/**
+ * 进程内店铺空间索引配置（hmdp.geo.local-index.enabled=true 时启用）
+ * 启动时从 tb_shop 分批加载坐标，之后订阅店铺变更消息，各节点从数据库重新读取变更的店铺
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "hmdp.geo.local-index", name = "enabled", havingValue = "true")
+public class GeoIndexConfig {
+
+    @Value("${hmdp.geo.local-index.cell-meters:500}")
+    private double cellMeters;
+
+    @Bean
+    public ShopGeoIndex shopGeoIndex() {
+        return new ShopGeoIndex(cellMeters);
+    }
+
+    /**
+     * 启动后按 id 游标分批加载店铺坐标（只查需要的列），并订阅店铺变更
+     */
+    @Bean
+    public ApplicationRunner shopGeoIndexLoader(ShopGeoIndex shopGeoIndex, IShopService shopService,
+                                                RedisMessageListenerContainer listenerContainer) {
+        return args -> {
+            //先订阅再加载，加载期间的变更不会丢；
+            //加载期间变更过的店铺记下来，分页读到的可能是变更前的旧数据，跳过它们，以变更时重新读取的为准
+            AtomicBoolean loading = new AtomicBoolean(true);
+            Set<Long> changed = ConcurrentHashMap.newKeySet();
+            listenerContainer.addMessageListener((message, pattern) -> {
+                long id = Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8));
+                if (loading.get()) {
+                    changed.add(id);
+                }
+                Shop shop = shopService.getById(id);
+                synchronized (changed) {
+                    if (shop == null || shop.getX() == null || shop.getY() == null) {
+                        shopGeoIndex.remove(id);
+                    } else {
+                        shopGeoIndex.put(id, shop.getTypeId(), shop.getX(), shop.getY());
+                    }
+                }
+            }, new ChannelTopic(SHOP_CHANGE_CHANNEL));
+            IdCursorScanner.scan(shopService.getBaseMapper(), new QueryWrapper<Shop>().select("id", "type_id", "x", "y"),
+                    Shop::getId, shops -> {
+                        //与变更消息的写入互斥，判断和写入之间不会插入一次变更
+                        synchronized (changed) {
+                            for (Shop shop : shops) {
+                                if (shop.getX() != null && shop.getY() != null && !changed.contains(shop.getId())) {
+                                    shopGeoIndex.put(shop.getId(), shop.getTypeId(), shop.getX(), shop.getY());
+                                }
+                            }
+                        }
+                    });
+            loading.set(false);
+            changed.clear();
+            shopGeoIndex.markReady();
+            log.info("店铺空间索引加载完成，共 {} 家店铺", shopGeoIndex.size());
+        };
+    }
+}
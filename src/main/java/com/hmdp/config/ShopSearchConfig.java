@@ -0,0 +1,77 @@
+package com.hmdp.config;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IShopService;
+import com.hmdp.utils.IdCursorScanner;
+import com.hmdp.utils.ShopSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.hmdp.utils.RedisConstants.SHOP_CHANGE_CHANNEL;
+
+/**
+ * 店铺搜索索引配置
+ * 启动时从 tb_shop 分批加载名称、商圈、地址，之后订阅店铺变更消息，各节点从数据库重新读取变更的店铺
+ */
+@Slf4j
+@Configuration
+public class ShopSearchConfig {
+
+    @Bean
+    public ShopSearchIndex shopSearchIndex() {
+        return new ShopSearchIndex();
+    }
+
+    /**
+     * 启动后按 id 游标分批加载店铺文本（只查需要的列），并订阅店铺变更
+     */
+    @Bean
+    public ApplicationRunner shopSearchIndexLoader(ShopSearchIndex shopSearchIndex, IShopService shopService,
+                                                   RedisMessageListenerContainer listenerContainer) {
+        return args -> {
+            //先订阅店铺变更再加载，加载期间改了名称、地址的店铺也会被重新读取；
+            //加载期间变更过的店铺记下来，分页读到的可能是变更前的旧数据，跳过它们，以变更时重新读取的为准
+            AtomicBoolean loading = new AtomicBoolean(true);
+            Set<Long> changed = ConcurrentHashMap.newKeySet();
+            listenerContainer.addMessageListener((message, pattern) -> {
+                long id = Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8));
+                if (loading.get()) {
+                    changed.add(id);
+                }
+                Shop shop = shopService.getById(id);
+                synchronized (changed) {
+                    if (shop == null) {
+                        shopSearchIndex.remove(id);
+                    } else {
+                        shopSearchIndex.put(id, shop.getName(), shop.getArea(), shop.getAddress());
+                    }
+                }
+            }, new ChannelTopic(SHOP_CHANGE_CHANNEL));
+            IdCursorScanner.scan(shopService.getBaseMapper(), new QueryWrapper<Shop>().select("id", "name", "area", "address"),
+                    Shop::getId, shops -> {
+                        //与变更消息的写入互斥，判断和写入之间不会插入一次变更
+                        synchronized (changed) {
+                            for (Shop shop : shops) {
+                                if (!changed.contains(shop.getId())) {
+                                    shopSearchIndex.bulkPut(shop.getId(), shop.getName(), shop.getArea(), shop.getAddress());
+                                }
+                            }
+                        }
+                    });
+            loading.set(false);
+            changed.clear();
+            shopSearchIndex.markReady();
+            log.info("店铺搜索索引加载完成，共 {} 家店铺", shopSearchIndex.size());
+        };
+    }
+}
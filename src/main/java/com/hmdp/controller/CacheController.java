@@ -0,0 +1,57 @@
+package com.hmdp.controller;
+
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.CacheRebuildScheduler;
+import com.hmdp.utils.HotKeyDetector;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * <p>
+ * 缓存诊断、管理接口
+ * </p>
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Resource
+    private CacheRebuildScheduler rebuildScheduler;
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+    @Resource
+    private IShopTypeService typeService;
+
+    /**
+     * 查询缓存重建指标（队列长度、重建耗时、失败次数等）
+     * @return 指标快照
+     */
+    @GetMapping("/rebuild/stats")
+    public Result rebuildStats() {
+        return Result.ok(rebuildScheduler.stats());
+    }
+
+    /**
+     * 查询当前探测到的热点 key（已常驻本地缓存）
+     * @return 热点 key 及访问次数
+     */
+    @GetMapping("/hot-keys")
+    public Result hotKeys() {
+        return Result.ok(hotKeyDetector.hotKeys());
+    }
+
+    /**
+     * 店铺类型数据修改后，重新生成快照并通知所有节点重新加载
+     * @return 新版本号
+     */
+    @PostMapping("/shop-type/refresh")
+    public Result refreshShopType() {
+        return Result.ok(typeService.refreshTypeList().getVersion());
+    }
+}
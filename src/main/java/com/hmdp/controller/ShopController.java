@@ -1,12 +1,10 @@
 package com.hmdp.controller;
 
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.dto.NearbyQuery;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.IShopService;
-import com.hmdp.utils.SystemConstants;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
@@ -39,6 +37,16 @@ public class ShopController {
         return shopService.queryShopById(id);
     }
 
+    /**
+     * 查询商铺详情（商铺信息 + 优惠券 + 热门笔记），超时的部分在 missing 中列出
+     * @param id 商铺id
+     * @return 商铺详情聚合数据
+     */
+    @GetMapping("/{id}/detail")
+    public Result queryShopDetail(@PathVariable("id") Long id){
+        return shopService.queryShopDetail(id);
+    }
+
     /**
      * 新增商铺信息
      * @param shop 商铺数据
@@ -46,10 +54,7 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -81,6 +86,34 @@ public class ShopController {
         return shopService.queryShopByType(typeId,current,x,y);
     }
 
+    /**
+     * 根据商铺类型按距离滚动查询附近商铺（游标分页，每一页的开销与页码无关）
+     * @param typeId 商铺类型
+     * @param x 经度
+     * @param y 维度
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 商铺列表和下一页的游标
+     */
+    @GetMapping("/of/type/scroll")
+    public Result scrollShopByType(
+            @RequestParam("typeId") Integer typeId,
+            @RequestParam("x") Double x,
+            @RequestParam("y") Double y,
+            @RequestParam(value = "cursor", required = false) String cursor
+    ) {
+        return shopService.scrollShopByType(typeId, x, y, cursor);
+    }
+
+    /**
+     * 附近店铺综合搜索：多个类型合并查询，按价格、评分、营业时间过滤，按距离、评分、销量综合排序
+     * @param query 查询条件
+     * @return 排好序的商铺列表
+     */
+    @GetMapping("/nearby")
+    public Result searchNearby(NearbyQuery query) {
+        return shopService.searchNearby(query);
+    }
+
     /**
      * 根据商铺名称关键字分页查询商铺信息
      * @param name 商铺名称关键字
@@ -92,11 +125,6 @@ public class ShopController {
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "current", defaultValue = "1") Integer current
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .like(StrUtil.isNotBlank(name), "name", name)
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        return shopService.queryShopByName(name, current);
     }
 }
@@ -1,16 +1,18 @@
 package com.hmdp.controller;
 
 
-import com.hmdp.dto.Result;
-import com.hmdp.entity.ShopType;
+import com.hmdp.dto.ShopTypeSnapshot;
 import com.hmdp.service.IShopTypeService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.annotation.Resource;
-import java.util.List;
 
 /**
  * <p>
@@ -28,13 +30,20 @@ public class ShopTypeController {
     private IShopTypeService typeService;
 
     /**
-     * 查询店铺类型列表
+     * 查询店铺类型列表（直接写出序列化好的快照；客户端带 If-None-Match 且未变化时返回 304）
      * @return
      */
     @GetMapping("list")
-    public Result queryTypeList() {
-        log.info("查询店铺类型列表");
-        return typeService.queryTypeList();
-
+    public ResponseEntity<byte[]> queryTypeList(WebRequest request) {
+        ShopTypeSnapshot snapshot = typeService.queryTypeList();
+        if (request.checkNotModified(snapshot.getEtag())) {
+            //已写好 304 响应
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.getEtag())
+                .body(snapshot.getBody());
     }
 }
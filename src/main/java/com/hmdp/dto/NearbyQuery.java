@@ -0,0 +1,33 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 附近店铺查询条件
+ */
+@Data
+public class NearbyQuery {
+    //店铺类型（可多个）
+    private List<Long> typeIds;
+    //经度
+    private Double x;
+    //纬度
+    private Double y;
+    //搜索半径（米），不传默认 5000
+    private Double radius;
+    //人均价格区间
+    private Long minPrice;
+    private Long maxPrice;
+    //最低评分（乘 10 保存，如 40 表示 4.0 分）
+    private Integer minScore;
+    //只看正在营业的
+    private Boolean openNow;
+    //排序权重（距离、评分、销量），不传使用配置的默认值
+    private Double distanceWeight;
+    private Double scoreWeight;
+    private Double soldWeight;
+    //返回条数
+    private Integer limit;
+}
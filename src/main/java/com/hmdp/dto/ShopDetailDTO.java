@@ -0,0 +1,21 @@
+package com.hmdp.dto;
+
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.Voucher;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 店铺详情聚合视图：店铺信息 + 优惠券 + 热门笔记
+ */
+@Data
+public class ShopDetailDTO {
+    private Shop shop;
+    private List<Voucher> vouchers;
+    private List<Blog> blogs;
+    //超时或失败而缺失的部分（shop / vouchers / blogs），为空表示结果完整
+    private List<String> missing = new ArrayList<>();
+}
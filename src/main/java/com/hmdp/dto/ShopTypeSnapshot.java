@@ -0,0 +1,18 @@
+package com.hmdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 店铺类型列表的不可变快照：已序列化好的响应体 + 版本号 + ETag
+ */
+@Getter
+@AllArgsConstructor
+public class ShopTypeSnapshot {
+    //Redis 中的版本号（为 null 表示未发布到 Redis）
+    private final Long version;
+    //响应体（Result 的 JSON），直接写给客户端
+    private final byte[] body;
+    //响应体内容的摘要，内容不变 ETag 就不变
+    private final String etag;
+}
@@ -0,0 +1,18 @@
+package com.hmdp.dto;
+
+import com.hmdp.entity.Voucher;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 店铺优惠券列表的缓存对象（只缓存不常变的券信息，秒杀库存读取时从 Redis 覆盖）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShopVoucherList {
+    private List<Voucher> vouchers;
+}
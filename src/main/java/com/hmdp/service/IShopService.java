@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.NearbyQuery;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
@@ -16,7 +17,17 @@ public interface IShopService extends IService<Shop> {
 
     Result queryShopById(Long id);
 
+    Result queryShopDetail(Long id);
+
+    Result saveShop(Shop shop);
+
     Result updateShop(Shop shop);
 
     Result queryShopByType(Integer typeId, Integer current, Double x, Double y);
+
+    Result scrollShopByType(Integer typeId, Double x, Double y, String cursor);
+
+    Result searchNearby(NearbyQuery query);
+
+    Result queryShopByName(String name, Integer current);
 }
@@ -1,6 +1,6 @@
 package com.hmdp.service;
 
-import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopTypeSnapshot;
 import com.hmdp.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -14,6 +14,8 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IShopTypeService extends IService<ShopType> {
 
-    Result queryTypeList();
+    ShopTypeSnapshot queryTypeList();
+
+    ShopTypeSnapshot refreshTypeList();
 
 }
@@ -4,7 +4,6 @@ import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.stream.CollectorUtil;
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
@@ -17,6 +16,9 @@ import com.hmdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.service.IFollowService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.BloomFilter;
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.Hydrator;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -28,11 +30,17 @@ import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
 import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_DETAIL_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_USER_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_USER_TTL;
 import static com.hmdp.utils.RedisConstants.FEED_KEY;
 
 /**
@@ -52,6 +60,12 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     private StringRedisTemplate template;
     @Resource
     private IFollowService followService;
+    @Resource
+    private BloomFilter blogBloomFilter;
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+    @Resource
+    private Hydrator hydrator;
 
 
     /**
@@ -67,19 +81,64 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
                 .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
         // 获取当前页数据
         List<Blog> records = page.getRecords();
-        // 查询笔记作者信息，及用户是否点赞过
-        records.forEach(blog ->{
-            Long userId = blog.getUserId();
-            User user = userService.getById(userId);
-            blog.setName(user.getNickName());
-            blog.setIcon(user.getIcon());
-            isBlogLiked(blog);
-        });
+        // 批量查询笔记作者信息（一次 MGET + 未命中的一次 IN 查询），及用户是否点赞过
+        fillAuthors(records);
+        records.forEach(this::isBlogLiked);
         return Result.ok(records);
 
 
     }
 
+    /**
+     * 查询店铺点赞数最多的几篇笔记（带作者信息，不含当前用户的点赞状态，可供所有用户共享缓存）
+     * @param shopId 店铺id
+     * @param size 条数
+     * @return 笔记列表
+     */
+    @Override
+    public List<Blog> listHotBlogOfShop(Long shopId, int size) {
+        List<Blog> records = query()
+                .eq("shop_id", shopId)
+                .orderByDesc("liked")
+                .last("limit " + size)
+                .list();
+        fillAuthors(records);
+        return records;
+    }
+
+    /**
+     * 标记当前登录用户是否点赞过这些笔记
+     * @param blogs 笔记列表
+     */
+    @Override
+    public void markLiked(List<Blog> blogs) {
+        blogs.forEach(this::isBlogLiked);
+    }
+
+    //批量填充笔记作者的昵称、头像
+    private void fillAuthors(List<Blog> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<Long> userIds = records.stream().map(Blog::getUserId).distinct().collect(Collectors.toList());
+        Map<Long, UserDTO> users = queryUsers(userIds).stream()
+                .collect(Collectors.toMap(UserDTO::getId, Function.identity()));
+        records.forEach(blog ->{
+            UserDTO user = users.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        });
+    }
+
+    //按 ids 顺序批量查询用户公开信息（走用户缓存）
+    private List<UserDTO> queryUsers(List<Long> ids) {
+        return hydrator.hydrate(ids, CACHE_USER_KEY, UserDTO.class,
+                missIds -> BeanUtil.copyToList(userService.listByIds(missIds), UserDTO.class),
+                UserDTO::getId, CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
+
     /**
      * id查询达人探店日志
      * @param id
@@ -87,6 +146,10 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
      */
     @Override
     public Result queryBlogById(Long id) {
+        //布隆过滤器判定不存在的id，直接返回，不查数据库
+        if(!blogBloomFilter.mightContain(id)){
+            return Result.fail("笔记不存在！");
+        }
         Blog blog = getById(id);
         if(BeanUtil.isEmpty(blog)){
             return Result.fail("笔记不存在！");
@@ -159,17 +222,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         Set<String> setIds = template.opsForZSet().range(key, 0, 4);
         if(setIds.isEmpty()) return Result.ok(Collections.emptyList()); //没人点赞，返回空集合
         List<Long> ids = setIds.stream().map(Long::valueOf).collect(Collectors.toList());
-        String idStr = StrUtil.join(",", ids);
-        //根据ids查库，获取用户集信息 （where id in(4,6,3,2) order by field(id,4,,6,3,2)）
-        List<User> users = userService.query()
-                .in("id",ids)//in 查出的数据，不能自动排序
-                .last("order by field(id,"+idStr+")") //手动写最后一条sql，使其根据id字段排序
-                .list();
-        //封装 UsetDTO 集合返回
-        List<UserDTO> userDTOS = users.stream()
-                .map(u -> BeanUtil.copyProperties(u, UserDTO.class))
-                .collect(Collectors.toList());
-        return Result.ok(userDTOS);
+        //按点赞顺序批量查询用户公开信息（先查缓存，未命中的一次 IN 查库，在内存中恢复顺序）
+        return Result.ok(queryUsers(ids));
     }
 
     /**
@@ -191,6 +245,10 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         if(!isSuccess){
             return Result.fail("保存笔记不成功！");
         }
+        // 新笔记id加入布隆过滤器
+        blogBloomFilter.put(blog.getId());
+        // 店铺详情里的热门笔记随之变化
+        cacheInvalidator.invalidate(CACHE_SHOP_DETAIL_KEY + blog.getShopId());
         // 查询此用户所有粉丝（把他关注的人查出来）
         List<Follow> follows = followService.query().eq("follow_user_id", user.getId()).list();
         // 推送笔记id给所有粉丝的 ZSet 收件箱
@@ -223,7 +281,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             return Result.ok();
         }
         //4.解析数据：blogId、minTime(时间戳)、offset
-        ArrayList<Object> blogIds = new ArrayList<>(typedTuples.size());//收集 blogIds
+        List<Long> blogIds = new ArrayList<>(typedTuples.size());//收集 blogIds
         long minTime = 0;//记录最小时间戳
         int count = 1;//记录偏移量
         for (ZSetOperations.TypedTuple<String> tuple : typedTuples) {
@@ -238,20 +296,11 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             }
         }
         offset=count;
-        String idStr = StrUtil.join(",", blogIds);//ids集合元素用“，”拼接成字符串
-        //5.排序批量查询笔记
-        List<Blog> blogs = query()
-                .in("id",blogIds)//in 查出的数据，不能自动排序
-                .last("order by field(id,"+idStr+")") //手动写最后一条sql，使其根据id字段排序
-                .list();
-        //6.查询笔记作者信息，及用户是否点赞过
-        blogs.forEach(blog ->{
-            Long id = blog.getUserId();
-            User user = userService.getById(id);
-            blog.setName(user.getNickName());
-            blog.setIcon(user.getIcon());
-            isBlogLiked(blog);
-        });
+        //5.一次 IN 批量查询笔记，按收件箱顺序排列
+        List<Blog> blogs = Hydrator.reorder(blogIds, listByIds(blogIds), Blog::getId);
+        //6.批量查询笔记作者信息，及用户是否点赞过
+        fillAuthors(blogs);
+        blogs.forEach(this::isBlogLiked);
         //7.封装 ScrollResult 滚动分页结果返回
         ScrollResult scrollResult = ScrollResult.builder()
                 .list(blogs)
@@ -7,11 +7,11 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Follow;
-import com.hmdp.entity.User;
 import com.hmdp.mapper.FollowMapper;
 import com.hmdp.service.IFollowService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.Hydrator;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -22,8 +22,12 @@ import javax.servlet.http.HttpServletResponse;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static com.hmdp.utils.RedisConstants.CACHE_USER_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_USER_TTL;
+
 /**
  * <p>
  *  服务实现类
@@ -42,6 +46,8 @@ public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> impleme
     private StringRedisTemplate template;
     @Resource
     private IUserService userService;
+    @Resource
+    private Hydrator hydrator;
 
 
     /**
@@ -111,11 +117,10 @@ public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> impleme
                 .map(Long::valueOf)
                 .collect(Collectors.toList());
 
-        //查询共同关注的用户信息（封装进UserDTO返回）
-        List<User> users = userService.listByIds(ids);
-        List<UserDTO> userDTOS = users.stream()
-                .map(u -> BeanUtil.copyProperties(u, UserDTO.class))
-                .collect(Collectors.toList());
+        //查询共同关注的用户信息（先查用户缓存，未命中的一次 IN 查库）
+        List<UserDTO> userDTOS = hydrator.hydrate(ids, CACHE_USER_KEY, UserDTO.class,
+                missIds -> BeanUtil.copyToList(userService.listByIds(missIds), UserDTO.class),
+                UserDTO::getId, CACHE_USER_TTL, TimeUnit.MINUTES);
         return Result.ok(userDTOS);
     }
 }
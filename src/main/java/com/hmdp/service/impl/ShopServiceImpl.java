@@ -1,21 +1,42 @@
 package com.hmdp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.RedisData;
+import com.hmdp.dto.GeoScrollResult;
+import com.hmdp.dto.NearbyQuery;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopDetailDTO;
+import com.hmdp.entity.Blog;
 import com.hmdp.entity.Shop;
+import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.ShopMapper;
+import com.hmdp.service.IBlogService;
 import com.hmdp.service.IShopService;
+import com.hmdp.service.IVoucherService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.BloomFilter;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.CacheRebuildScheduler;
+import com.hmdp.utils.GeoResultCache;
+import com.hmdp.utils.GeoSearcher;
+import com.hmdp.utils.Hydrator;
+import com.hmdp.utils.LongIndexMap;
+import com.hmdp.utils.OpenHours;
+import com.hmdp.utils.ShopGeoIndex;
+import com.hmdp.utils.ShopGeoMaintainer;
+import com.hmdp.utils.ShopSearchIndex;
 import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.GeoResult;
 import org.springframework.data.geo.GeoResults;
@@ -24,16 +45,25 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.domain.geo.GeoReference;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
 import javax.annotation.Resources;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -54,8 +84,50 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Autowired
     private CacheClient cacheClient;
 
-    //线程池
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    @Resource
+    private CacheRebuildScheduler rebuildScheduler;
+    @Resource
+    private BloomFilter shopBloomFilter;
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+    @Resource
+    private GeoSearcher geoSearcher;
+    @Resource
+    private ShopGeoMaintainer shopGeoMaintainer;
+    @Resource
+    private GeoResultCache geoResultCache;
+    @Resource
+    private Hydrator hydrator;
+    @Resource
+    private ShopSearchIndex shopSearchIndex;
+    @Resource
+    private IVoucherService voucherService;
+    @Resource
+    private IBlogService blogService;
+    @Resource
+    private ThreadPoolExecutor shopDetailExecutor;
+    //进程内空间索引（未启用时为 null）
+    @Autowired(required = false)
+    private ShopGeoIndex shopGeoIndex;
+
+    //附近店铺综合排序的默认权重
+    @Value("${hmdp.nearby.weight.distance:0.6}")
+    private double distanceWeight;
+    @Value("${hmdp.nearby.weight.score:0.3}")
+    private double scoreWeight;
+    @Value("${hmdp.nearby.weight.sold:0.1}")
+    private double soldWeight;
+
+    //店铺详情各部分的超时时间（毫秒）
+    @Value("${hmdp.shop-detail.timeout-millis.shop:300}")
+    private long shopTimeoutMillis;
+    @Value("${hmdp.shop-detail.timeout-millis.vouchers:300}")
+    private long voucherTimeoutMillis;
+    @Value("${hmdp.shop-detail.timeout-millis.blogs:500}")
+    private long blogTimeoutMillis;
+
+    //店铺缓存的逻辑过期时间（秒）
+    private static final Long SHOP_LOGICAL_EXPIRE_SECONDS = 10L;
 
     /**
      * 根据id查询店铺
@@ -68,15 +140,112 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         //存入 null 进 Redis 解决缓存穿透
 //        Shop shop = cacheClient.queryWithPassThrough(id,CACHE_SHOP_KEY,Shop.class, this::getById,CACHE_SHOP_TTL,TimeUnit.MINUTES);
 
-        //添加互斥锁解决缓存击穿
-//        Shop shop = queryWithMutex(id);
+        //添加互斥锁解决缓存击穿（进程内合并请求 + 分布式互斥锁）
+//        Shop shop = cacheClient.queryWithMutex(id, CACHE_SHOP_KEY, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
 
-        //互斥锁+逻辑过期时间，解决缓存击穿
-        Shop shop = cacheClient.queryWithLogicalExpire(id, CACHE_SHOP_KEY, Shop.class, this::getById, 10L, TimeUnit.SECONDS);
+        //互斥锁+逻辑过期时间，解决缓存击穿（概率性提前刷新，热点店铺不会同时过期）
+        Shop shop = queryShopCached(id);
 
         return shop != null ? Result.ok(shop) : Result.fail("店铺不存在！");
     }
 
+    private Shop queryShopCached(Long id) {
+        return cacheClient.queryWithLogicalExpire(id, CACHE_SHOP_KEY, Shop.class, this::getById, SHOP_LOGICAL_EXPIRE_SECONDS, TimeUnit.SECONDS,
+                CacheClient.RefreshMode.EARLY_PROBABILISTIC);
+    }
+
+    /**
+     * 查询店铺详情（店铺信息 + 优惠券 + 热门笔记）
+     * 三部分在有界线程池中并行查询，各自超时，超时或失败的部分按缺失返回；
+     * 完整的结果缓存一小段时间，秒杀券库存和当前用户的点赞状态每次单独填充
+     *
+     * @param id 店铺id
+     * @return 店铺详情
+     */
+    @Override
+    public Result queryShopDetail(Long id) {
+        ShopDetailDTO detail = cacheClient.getIfPresent(id, CACHE_SHOP_DETAIL_KEY, ShopDetailDTO.class);
+        if (detail == null) {
+            //一定不存在的店铺直接返回，不再并行查询优惠券和笔记（不存在的结果不缓存，每次都会查库）
+            if (!shopBloomFilter.mightContain(id)) {
+                return Result.fail("店铺不存在！");
+            }
+            detail = assembleShopDetail(id);
+            if (detail.getShop() == null && detail.getMissing().isEmpty()) {
+                return Result.fail("店铺不存在！");
+            }
+            if (detail.getMissing().isEmpty()) {
+                //只缓存完整的结果
+                cacheClient.set(CACHE_SHOP_DETAIL_KEY + id, detail, CACHE_SHOP_DETAIL_TTL, TimeUnit.SECONDS);
+            }
+        }
+        //缓存的对象是共享的，复制一份再填充实时库存和当前用户的点赞状态
+        ShopDetailDTO view = BeanUtil.copyProperties(detail, ShopDetailDTO.class);
+        if (CollUtil.isNotEmpty(detail.getVouchers())) {
+            view.setVouchers(voucherService.withLiveStock(detail.getVouchers()));
+        }
+        if (CollUtil.isNotEmpty(detail.getBlogs()) && UserHolder.getUser() != null) {
+            view.setBlogs(BeanUtil.copyToList(detail.getBlogs(), Blog.class));
+            blogService.markLiked(view.getBlogs());
+        }
+        return Result.ok(view);
+    }
+
+    //并行查询店铺详情的各部分
+    private ShopDetailDTO assembleShopDetail(Long id) {
+        CompletableFuture<Shop> shop = fetchPart("shop", () -> queryShopCached(id), shopTimeoutMillis);
+        CompletableFuture<List<Voucher>> vouchers = fetchPart("vouchers",
+                () -> voucherService.listVoucherOfShop(id), voucherTimeoutMillis);
+        CompletableFuture<List<Blog>> blogs = fetchPart("blogs",
+                () -> blogService.listHotBlogOfShop(id, SystemConstants.SHOP_DETAIL_BLOG_SIZE), blogTimeoutMillis);
+        ShopDetailDTO detail = new ShopDetailDTO();
+        detail.setShop(joinPart("shop", shop, detail.getMissing()));
+        detail.setVouchers(joinPart("vouchers", vouchers, detail.getMissing()));
+        detail.setBlogs(joinPart("blogs", blogs, detail.getMissing()));
+        return detail;
+    }
+
+    //提交一个部分的查询任务（线程池满时立即失败）
+    //orTimeout 只让结果超时，不会停止查询本身，所以超时后再取消任务、中断线程，
+    //响应中断的查询（如 Redis）会尽早释放线程；不响应中断的 JDBC 查询仍会执行完，线程池有界保证不会无限堆积
+    private <T> CompletableFuture<T> fetchPart(String part, Supplier<T> loader, long timeoutMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = shopDetailExecutor.submit(() -> {
+                try {
+                    result.complete(loader.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("店铺详情线程池已满，跳过查询：{}", part);
+            return CompletableFuture.failedFuture(e);
+        }
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((value, e) -> {
+            if (e != null) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    //等待一个部分的结果，超时或失败时记为缺失
+    private <T> T joinPart(String part, CompletableFuture<T> future, List<String> missing) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                log.warn("店铺详情查询超时：{}", part);
+            } else {
+                log.error("店铺详情查询失败：{}", part, e.getCause());
+            }
+            missing.add(part);
+            return null;
+        }
+    }
+
     //存null进Redis，解决缓存穿透
     private Shop queryWithPassThrough(Long id) {
         String key = CACHE_SHOP_KEY + id;
@@ -102,56 +271,6 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         return shop;
     }
 
-    //添加互斥锁，解决缓存击穿
-    private Shop queryWithMutex(Long id) {
-        String key = CACHE_SHOP_KEY + id;
-        String shopJson = template.opsForValue().get(key);
-        if (StrUtil.isNotBlank(shopJson)) {
-            // 缓存中存在，将数据返回
-            return JSONUtil.toBean(shopJson, Shop.class);
-        }
-        //判断是否从 Redis 获取出的是否是空值 “”
-        if (Objects.equals(shopJson, "")) {
-            //是空值说明有缓存穿透现象，返回错误信息
-            return null;
-        }
-        String lockKey = null;
-        Shop shop = null;
-        try {
-            //尝试获取锁
-            lockKey = LOCK_SHOP_KEY + id;
-            boolean tryLock = tryLock(lockKey);
-            if (!tryLock) {
-                //没获取到锁，休眠50ms，重新查Redis、获取锁
-                Thread.sleep(50);
-                return queryWithMutex(id);
-            }
-            //获取到了锁，再检查Redis中是否已有缓存，后再决定是否查数据库，更新Redis
-            shopJson = template.opsForValue().get(key);
-            if (StrUtil.isNotBlank(shopJson)) {
-                return JSONUtil.toBean(shopJson, Shop.class);// 缓存中存在，将数据返回，无需重建缓存
-            }
-            if (Objects.equals(shopJson, "")) {
-                return null;
-            }
-            shop = getById(id);//查库
-            if (BeanUtil.isEmpty(shop)) {
-                //数据库没查到
-                //将空值写入 Redis 防止缓存穿透
-                template.opsForValue().set(CACHE_SHOP_KEY + id, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                return null;
-            }
-            String cacheShop = JSONUtil.toJsonStr(shop);
-            template.opsForValue().set(CACHE_SHOP_KEY + id, cacheShop, CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            throw new RuntimeException();
-        } finally {
-            //释放锁
-            unlock(lockKey);
-        }
-        return shop;
-    }
-
     //添加逻辑过期时间，解决缓存击穿
     private Shop queryWithLogicalExpire(Long id) {
         String key = CACHE_SHOP_KEY + id;
@@ -186,16 +305,20 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             // 缓存中的店铺信息还没过期，将数据返回，无需重建缓存
             return JSONUtil.toBean((JSONObject) shopRedisData.getData(), Shop.class);
         }
-        //开启独立线程，完成缓存重建、释放锁
-        CACHE_REBUILD_EXECUTOR.submit(() -> {
+        //交给重建调度器，完成缓存重建、释放锁
+        boolean accepted = rebuildScheduler.submit(CACHE_SHOP_KEY, key, () -> {
             try {
                 saveShop2Redis(id, CACHE_SHOP_TTL);
-            } catch (Exception e) {
-                throw new RuntimeException();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("店铺缓存重建被中断", e);
             } finally {
                 unlock(lockKey);
             }
         });
+        if (!accepted) {
+            unlock(lockKey);
+        }
         return shop;
     }
 
@@ -227,6 +350,24 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     }
 
 
+    /**
+     * 新增店铺
+     *
+     * @param shop
+     * @return
+     */
+    @Override
+    public Result saveShop(Shop shop) {
+        // 写入数据库
+        save(shop);
+        // 新店铺id加入布隆过滤器
+        shopBloomFilter.put(shop.getId());
+        // 写入 GEO 索引，并通知各节点更新进程内索引（位置、搜索）
+        onShopChanged(shop.getId(), true, null);
+        // 返回店铺id
+        return Result.ok(shop.getId());
+    }
+
     /**
      * 修改店铺数据
      *
@@ -241,12 +382,69 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         if (id == null) {
             return Result.fail("店铺id不能为空");
         }
+        //坐标或类型有修改时，记下原来的类型（修改类型后要从原类型的 GEO 集合中删除）
+        boolean locationChanged = shop.getX() != null || shop.getY() != null || shop.getTypeId() != null;
+        Long oldTypeId = null;
+        if (locationChanged) {
+            Shop old = query().select("type_id").eq("id", id).one();
+            oldTypeId = old == null ? null : old.getTypeId();
+        }
         updateById(shop);
-        //2.删除缓存
-        template.delete(CACHE_SHOP_KEY + id);
+        //2.登记删除缓存：事务提交后由后台批量删除（包括所有节点的本地缓存），并延迟再删一次
+        cacheInvalidator.invalidate(CACHE_SHOP_KEY + id, CACHE_SHOP_DETAIL_KEY + id);
+        //3.事务提交后：坐标或类型变了的更新 GEO 索引，并通知各节点更新进程内索引（位置、搜索）
+        onShopChanged(id, locationChanged, oldTypeId);
         return Result.ok();
     }
 
+    //店铺变更（有事务时在提交后执行）：位置变了的增量更新 Redis GEO 索引，并发布消息让各节点更新进程内索引
+    private void onShopChanged(Long id, boolean locationChanged, Long oldTypeId) {
+        Runnable apply = () -> {
+            if (locationChanged) {
+                shopGeoMaintainer.apply(id, oldTypeId);
+                //其他节点的附近查询缓存在很短的存活时间后自然过期
+                geoResultCache.invalidateAll();
+            }
+            template.convertAndSend(SHOP_CHANGE_CHANNEL, id.toString());
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * 根据商铺名称关键字分页查询商铺信息（索引加载完成前直接查库）
+     *
+     * @param name
+     * @param current
+     * @return
+     */
+    @Override
+    public Result queryShopByName(String name, Integer current) {
+        //页码从 1 开始，小于 1 的按第一页处理（否则 offset 为负）
+        current = current == null ? 1 : Math.max(1, current);
+        if (StrUtil.isBlank(name) || !shopSearchIndex.isReady()) {
+            // 根据类型分页查询
+            Page<Shop> page = query()
+                    .like(StrUtil.isNotBlank(name), "name", name)
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
+            // 返回数据
+            return Result.ok(page.getRecords());
+        }
+        //1.倒排索引查出这一页的店铺id
+        List<Long> shopIds = shopSearchIndex.search(name, (current - 1) * SystemConstants.MAX_PAGE_SIZE,
+                SystemConstants.MAX_PAGE_SIZE);
+        //2.批量查询店铺（按 shopIds 顺序）
+        return Result.ok(hydrateShops(shopIds));
+    }
+
     /**
      * 根据商铺类型分页查询商铺信息
      *
@@ -271,13 +469,24 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         //2.计算分页参数
         int from = (current - 1) * SystemConstants.DEFAULT_PAGE_SIZE; //开始条数
         int end = current * SystemConstants.DEFAULT_PAGE_SIZE; // 结束条数
-        //3.查询redis，按照距离排序、分页、结果：shopId、distance
+        if (shopGeoIndex != null && shopGeoIndex.isReady()) {
+            //启用了进程内空间索引，直接在本地算出最近的 end 个店铺
+            List<GeoSearcher.Hit> hits = shopGeoIndex.nearest(typeId, x, y, SystemConstants.GEO_SEARCH_RADIUS, end);
+            return Result.ok(queryShopsWithDistance(hits.size() <= from ? Collections.emptyList() : hits.subList(from, hits.size())));
+        }
         String key = SHOP_GEO_KEY + typeId;
+        //同一网格内的请求共用一份候选集，按用户真实坐标重新计算距离（候选集不足以保证准确时直接查 Redis）
+        List<GeoSearcher.Hit> cachedHits = geoResultCache.nearest(typeId, x, y, SystemConstants.GEO_SEARCH_RADIUS, end,
+                (cx, cy, radius, limit) -> loadGeoCandidates(key, cx, cy, radius, limit));
+        if (cachedHits != null) {
+            return Result.ok(queryShopsWithDistance(cachedHits.size() <= from ? Collections.emptyList() : cachedHits.subList(from, cachedHits.size())));
+        }
+        //3.查询redis，按照距离排序、分页、结果：shopId、distance
         GeoResults<RedisGeoCommands.GeoLocation<String>> results = template.opsForGeo()
                 .search( //GEOSEARCH key BYLONLAT x y RYRADIUS 10 WITHDISTANCH
                         key,
                         GeoReference.fromCoordinate(x, y),//经纬度
-                        new Distance(5000), //（单位：米）查询5公里范围内的所有店铺
+                        new Distance(SystemConstants.GEO_SEARCH_RADIUS), //（单位：米）查询5公里范围内的所有店铺
                         RedisGeoCommands.GeoSearchCommandArgs //搜索参数
                                 .newGeoSearchArgs().includeDistance() //结果加上距离（ WITHDISTANCH）
                                 .limit(end) //（范围）只能传一个参数，查询排序后从头到第 end（尾） 条数据
@@ -288,26 +497,211 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         List<GeoResult<RedisGeoCommands.GeoLocation<String>>> list = results.getContent();//数据结果集合
         if(list.size()<=from)
             return Result.ok(Collections.emptyList());//没有下一页了，返回空
-        ArrayList<Long> shopIds = new ArrayList<>(list.size());//收集店铺id
-        Map<String, Distance> distanceMap = new HashMap<>(list.size()); //收集每个店铺id对应的距离 map =（店铺idStr：距离）
+        List<GeoSearcher.Hit> hits = new ArrayList<>(list.size());//收集店铺id和距离
         //4.1截取从 from 到 end 部分 （用stream流的skip跳过方法）
         list.stream().skip(from).forEach(result -> {
-            //4.2获取店铺id
-            String shopIdStr = result.getContent().getName();
-            shopIds.add(Long.valueOf(shopIdStr));//收集店铺ids
-            //4.3获取距离
-            Distance distance = result.getDistance();
-            distanceMap.put(shopIdStr, distance);//收集店铺对应距离map
+            //4.2获取店铺id、距离
+            Long shopId = Long.valueOf(result.getContent().getName());
+            hits.add(new GeoSearcher.Hit(shopId, result.getDistance().getValue()));
         });
-        //5.根据id查询shop（查出的要根据id排序）
-        String shipIdsStr = StrUtil.join(",", shopIds);
-        List<Shop> shops = query().in("id", shopIds)
-                .last("order by field(id," + shipIdsStr + ")").list();
-        for (Shop shop : shops) {
-            //距离对应上每个店铺
-            shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
+        //5.根据id批量查询shop，6返回分页查询数据（店铺集合）
+        return Result.ok(queryShopsWithDistance(hits));
+    }
+
+    //以 (x, y) 为圆心查询 GEO 集合中最近的 limit 个店铺（带坐标）
+    private List<GeoResultCache.Candidate> loadGeoCandidates(String key, double x, double y, double radius, int limit) {
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results = template.opsForGeo()
+                .search(key, GeoReference.fromCoordinate(x, y), new Distance(radius),
+                        RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs()
+                                .includeCoordinates().sortAscending().limit(limit));
+        if (results == null) {
+            return Collections.emptyList();
+        }
+        List<GeoResultCache.Candidate> candidates = new ArrayList<>(results.getContent().size());
+        for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : results.getContent()) {
+            RedisGeoCommands.GeoLocation<String> location = result.getContent();
+            candidates.add(new GeoResultCache.Candidate(Long.valueOf(location.getName()),
+                    location.getPoint().getX(), location.getPoint().getY()));
+        }
+        return candidates;
+    }
+
+    /**
+     * 根据商铺类型按距离滚动查询附近商铺（游标分页）
+     * 游标记录上一页最后一个店铺的（距离，id）和当前圈宽，下一页只查询从这个距离开始的一圈，
+     * 不够一页再向外扩一圈（圈宽加倍），所以翻到第几页开销都差不多
+     *
+     * @param typeId
+     * @param x
+     * @param y
+     * @param cursor
+     * @return
+     */
+    @Override
+    public Result scrollShopByType(Integer typeId, Double x, Double y, String cursor) {
+        //1.解析游标（第一页没有游标）
+        double lastDistance = 0;
+        long lastId = 0;
+        double width = SystemConstants.GEO_RING_WIDTH;
+        if (StrUtil.isNotBlank(cursor)) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+                lastDistance = Double.parseDouble(parts[0]);
+                lastId = Long.parseLong(parts[1]);
+                width = Double.parseDouble(parts[2]);
+            } catch (RuntimeException e) {
+                return Result.fail("无效的分页游标");
+            }
+            //游标来自客户端，距离和id超出范围的直接拒绝，圈宽限制在 [下限, 搜索半径] 内（圈宽<=0 会死循环）
+            if (!Double.isFinite(lastDistance) || lastDistance < 0 || lastDistance > SystemConstants.GEO_SEARCH_RADIUS
+                    || lastId < 0 || Double.isNaN(width)) {
+                return Result.fail("无效的分页游标");
+            }
+            width = Math.max(SystemConstants.GEO_RING_MIN_WIDTH, Math.min(SystemConstants.GEO_SEARCH_RADIUS, width));
+        }
+        //2.从上一页最后的距离开始，一圈一圈向外查，直到凑够一页（多查一个用来判断是否还有下一页）
+        String key = SHOP_GEO_KEY + typeId;
+        int size = SystemConstants.DEFAULT_PAGE_SIZE;
+        double maxRadius = SystemConstants.GEO_SEARCH_RADIUS;
+        List<GeoSearcher.Hit> hits = new ArrayList<>(size + 1);
+        double inner = lastDistance;
+        int lastRingSize = 0;
+        //圈数上限兜底，避免任何情况下的死循环
+        for (int round = 0; round < SystemConstants.GEO_RING_MAX_ROUNDS && hits.size() <= size && inner <= maxRadius; round++) {
+            double outer = Math.min(inner + width, maxRadius);
+            //最外圈包含搜索半径上的点（与 GEOSEARCH BYRADIUS 一致）
+            double outerExclusive = outer >= maxRadius ? Math.nextUp(maxRadius) : outer;
+            List<GeoSearcher.Hit> ring = shopGeoIndex != null && shopGeoIndex.isReady()
+                    ? shopGeoIndex.searchRing(typeId, x, y, inner, outerExclusive)
+                    : geoSearcher.searchRing(key, x, y, inner, outerExclusive);
+            lastRingSize = ring.size();
+            for (GeoSearcher.Hit hit : ring) {
+                //跳过上一页已经返回过的
+                if (hit.getDistance() > lastDistance || (hit.getDistance() == lastDistance && hit.getId() > lastId)) {
+                    hits.add(hit);
+                }
+            }
+            if (outer >= maxRadius || hits.size() > size) {
+                break;
+            }
+            //这一圈不够一页，向外扩一圈（加倍圈宽）
+            inner = outer;
+            width = Math.min(width * 2, maxRadius);
+        }
+        //一圈的数据远多于一页时缩小圈宽，下一页少读一些
+        if (lastRingSize > 4 * size) {
+            width = Math.max(width / 2, SystemConstants.GEO_RING_MIN_WIDTH);
+        }
+        //3.截取一页，生成下一页的游标
+        boolean hasMore = hits.size() > size;
+        List<GeoSearcher.Hit> page = hasMore ? hits.subList(0, size) : hits;
+        String nextCursor = null;
+        if (hasMore) {
+            GeoSearcher.Hit last = page.get(page.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getDistance() + "," + last.getId() + "," + width).getBytes(StandardCharsets.UTF_8));
+        }
+        //4.根据id批量查询shop
+        return Result.ok(new GeoScrollResult(queryShopsWithDistance(page), nextCursor));
+    }
+
+    /**
+     * 附近店铺综合搜索
+     * 多个类型的 GEO 集合在一个管道里查询，候选店铺从缓存批量取出，
+     * 一次遍历完成过滤和打分，用大小为 limit 的小顶堆保留得分最高的店铺
+     *
+     * @param query
+     * @return
+     */
+    @Override
+    public Result searchNearby(NearbyQuery query) {
+        if (query.getX() == null || query.getY() == null || CollUtil.isEmpty(query.getTypeIds())) {
+            return Result.fail("经纬度和店铺类型不能为空");
+        }
+        double x = query.getX();
+        double y = query.getY();
+        double radius = query.getRadius() == null ? SystemConstants.GEO_SEARCH_RADIUS
+                : Math.min(Math.max(query.getRadius(), 1), SystemConstants.NEARBY_MAX_RADIUS);
+        int limit = query.getLimit() == null ? SystemConstants.MAX_PAGE_SIZE
+                : Math.min(Math.max(query.getLimit(), 1), SystemConstants.NEARBY_MAX_LIMIT);
+        double wDistance = query.getDistanceWeight() != null ? query.getDistanceWeight() : distanceWeight;
+        double wScore = query.getScoreWeight() != null ? query.getScoreWeight() : scoreWeight;
+        double wSold = query.getSoldWeight() != null ? query.getSoldWeight() : soldWeight;
+        //1.查询候选店铺（所有类型合并，只取最近的一部分参与排序）
+        List<GeoSearcher.Hit> hits;
+        if (shopGeoIndex != null && shopGeoIndex.isReady()) {
+            hits = new ArrayList<>();
+            for (Long typeId : new LinkedHashSet<>(query.getTypeIds())) {
+                hits.addAll(shopGeoIndex.nearest(typeId, x, y, radius, SystemConstants.NEARBY_MAX_CANDIDATES));
+            }
+            hits.sort(GeoSearcher.ORDER);
+        } else {
+            List<String> keys = query.getTypeIds().stream().distinct().map(t -> SHOP_GEO_KEY + t).collect(Collectors.toList());
+            hits = geoSearcher.searchRing(keys, x, y, 0, Math.nextUp(radius));
+        }
+        if (hits.size() > SystemConstants.NEARBY_MAX_CANDIDATES) {
+            hits = hits.subList(0, SystemConstants.NEARBY_MAX_CANDIDATES);
+        }
+        //2.批量取出候选店铺（一次 MGET，未命中的一次 IN 查库），id -> 在 hits 中的下标
+        List<Long> shopIds = hits.stream().map(GeoSearcher.Hit::getId).collect(Collectors.toList());
+        LongIndexMap hitIndex = LongIndexMap.of(shopIds);
+        List<Shop> candidates = hydrateShops(shopIds);
+        //3.一次遍历：过滤 + 打分，小顶堆保留得分最高的 limit 个
+        LocalTime now = LocalTime.now();
+        int minuteOfDay = now.getHour() * 60 + now.getMinute();
+        double soldNorm = Math.log1p(SystemConstants.NEARBY_SOLD_NORM);
+        PriorityQueue<double[]> heap = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(e -> e[0]));
+        Shop[] byHit = new Shop[hits.size()];
+        for (Shop shop : candidates) {
+            if (query.getMinPrice() != null && (shop.getAvgPrice() == null || shop.getAvgPrice() < query.getMinPrice())
+                    || query.getMaxPrice() != null && (shop.getAvgPrice() == null || shop.getAvgPrice() > query.getMaxPrice())
+                    || query.getMinScore() != null && (shop.getScore() == null || shop.getScore() < query.getMinScore())
+                    || BooleanUtil.isTrue(query.getOpenNow()) && !OpenHours.isOpen(shop.getOpenHours(), minuteOfDay)) {
+                continue;
+            }
+            int i = hitIndex.get(shop.getId());
+            double distance = hits.get(i).getDistance();
+            //各项归一化到 0~1：越近越高、评分满分 50、销量取对数
+            double rank = wDistance * (1 - distance / radius)
+                    + wScore * (shop.getScore() == null ? 0 : shop.getScore() / 50.0)
+                    + wSold * Math.min(1, Math.log1p(shop.getSold() == null ? 0 : shop.getSold()) / soldNorm);
+            heap.offer(new double[]{rank, i});
+            byHit[i] = shop;
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        //4.按得分从高到低输出
+        LinkedList<Shop> shops = new LinkedList<>();
+        while (!heap.isEmpty()) {
+            int i = (int) heap.poll()[1];
+            //缓存中的对象是共享的，复制一份再设置距离
+            Shop shop = BeanUtil.copyProperties(byHit[i], Shop.class);
+            shop.setDistance(hits.get(i).getDistance());
+            shops.addFirst(shop);
         }
-        //6返回分页查询数据（店铺集合）
         return Result.ok(shops);
     }
+
+    //根据 GEO 查询结果批量查询shop（结果按 hits 顺序返回），并填上距离
+    private List<Shop> queryShopsWithDistance(List<GeoSearcher.Hit> hits) {
+        List<Long> shopIds = hits.stream().map(GeoSearcher.Hit::getId).collect(Collectors.toList());
+        LongIndexMap hitIndex = LongIndexMap.of(shopIds);
+        List<Shop> cachedShops = hydrateShops(shopIds);
+        List<Shop> shops = new ArrayList<>(cachedShops.size());
+        for (Shop cached : cachedShops) {
+            //缓存中的对象是共享的，复制一份再设置距离
+            Shop shop = BeanUtil.copyProperties(cached, Shop.class);
+            //距离对应上每个店铺
+            shop.setDistance(hits.get(hitIndex.get(shop.getId())).getDistance());
+            shops.add(shop);
+        }
+        return shops;
+    }
+
+    //根据id批量查询shop（先一次 MGET 查缓存，未命中的一次 IN 查库，结果按 shopIds 顺序返回）
+    private List<Shop> hydrateShops(List<Long> shopIds) {
+        return hydrator.hydrateWithLogicalExpire(shopIds, CACHE_SHOP_KEY, Shop.class, this::listByIds, Shop::getId,
+                SHOP_LOGICAL_EXPIRE_SECONDS, TimeUnit.SECONDS);
+    }
 }
@@ -1,27 +1,28 @@
 package com.hmdp.service.impl;
 
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.json.JSONUtil;
-import com.baomidou.mybatisplus.extension.conditions.query.QueryChainWrapper;
+import cn.hutool.crypto.SecureUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopTypeSnapshot;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import org.springframework.data.redis.core.RedisHash;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
-import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_TTL;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_VERSION_KEY;
 
 /**
  * <p>
@@ -31,38 +32,113 @@ import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_TTL;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
     @Resource
     private StringRedisTemplate template;
+    @Resource
+    private ObjectMapper objectMapper;
+
+    //当前快照（整体替换，读的时候不加锁）
+    private volatile ShopTypeSnapshot snapshot;
 
     /**
-     * 查询店铺类型信息
+     * 查询店铺类型信息（按 sort 排序，直接返回内存中序列化好的快照）
      * @return
      */
     @Override
-    public Result queryTypeList() {
-        //查缓存
-        Set<String> shopTypes = template.opsForSet().members(CACHE_SHOP_TYPE_KEY);
-        List<ShopType> shopTypeList = new ArrayList<>();
-        if(CollectionUtil.isNotEmpty(shopTypes)){
-            List<ShopType> finalShopTypeList = shopTypeList; //lambda中不许有非final的变量
-            shopTypes.forEach(s->{ // 缓存中取出的是JSON字符串，用JSONUtil工具类变为bean，再放进集合返回
-                ShopType shopType = JSONUtil.toBean(s, ShopType.class);
-                finalShopTypeList.add(shopType);
-            });
-            return Result.ok(shopTypeList);
+    public ShopTypeSnapshot queryTypeList() {
+        ShopTypeSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = load();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 从数据库重新生成快照并发布到 Redis（版本号 +1，其他节点随后重新加载）
+     * @return 新快照
+     */
+    @Override
+    public synchronized ShopTypeSnapshot refreshTypeList() {
+        List<ShopType> shopTypeList = listTypes();
+        ShopTypeSnapshot built = toSnapshot(shopTypeList);
+        if (CollectionUtil.isEmpty(shopTypeList)) {
+            //店铺类型为空，不发布（本节点返回提示信息）
+            snapshot = built;
+            return built;
+        }
+        //先写内容再增加版本号，其他节点看到新版本时一定能读到对应的内容
+        template.opsForValue().set(CACHE_SHOP_TYPE_KEY, new String(built.getBody(), StandardCharsets.UTF_8));
+        Long version = template.opsForValue().increment(CACHE_SHOP_TYPE_VERSION_KEY);
+        snapshot = new ShopTypeSnapshot(version, built.getBody(), built.getEtag());
+        return snapshot;
+    }
+
+    /**
+     * 定时检查 Redis 中的版本号，变化了就重新加载快照（请求路径上不访问 Redis）
+     */
+    @Scheduled(fixedDelayString = "${hmdp.shop-type.version-check-millis:5000}")
+    public void checkVersion() {
+        ShopTypeSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        try {
+            String version = template.opsForValue().get(CACHE_SHOP_TYPE_VERSION_KEY);
+            //本地快照未发布（version 为 null）时，Redis 中也没有版本号才算一致
+            String currentVersion = current.getVersion() == null ? null : current.getVersion().toString();
+            if (!Objects.equals(version, currentVersion)) {
+                synchronized (this) {
+                    snapshot = load();
+                }
+            }
+        } catch (RuntimeException e) {
+            //Redis 不可用时继续使用本地快照
+            log.warn("检查店铺类型版本失败", e);
+        }
+    }
+
+    //先读 Redis 中发布的快照，没有再查库生成并发布
+    private ShopTypeSnapshot load() {
+        try {
+            String version = template.opsForValue().get(CACHE_SHOP_TYPE_VERSION_KEY);
+            String body = template.opsForValue().get(CACHE_SHOP_TYPE_KEY);
+            if (version != null && body != null) {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                return new ShopTypeSnapshot(Long.valueOf(version), bytes, etagOf(bytes));
+            }
+            return refreshTypeList();
+        } catch (RuntimeException e) {
+            //Redis 不可用时直接查库生成（未发布，之后的版本检查会重新加载）
+            log.warn("读取店铺类型快照失败，直接查库", e);
+            return toSnapshot(listTypes());
         }
-        //缓存不存在，查数据库
-        shopTypeList = list();
-        if(CollectionUtil.isEmpty(shopTypeList)){
-            return Result.fail("店铺类型为空！");
+    }
+
+    private List<ShopType> listTypes() {
+        return query().orderByAsc("sort").list();
+    }
+
+    //生成快照（未发布，version 为 null）
+    private ShopTypeSnapshot toSnapshot(List<ShopType> shopTypeList) {
+        Result result = CollectionUtil.isEmpty(shopTypeList) ? Result.fail("店铺类型为空！") : Result.ok(shopTypeList);
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("店铺类型列表序列化失败", e);
         }
-        shopTypeList.forEach(s->{// 把bean转为JSON字符串，再逐个放进Redis
-            String shopTypeJsonStr = JSONUtil.toJsonStr(s);
-            template.opsForSet().add(CACHE_SHOP_TYPE_KEY,shopTypeJsonStr);
-        });
-        template.expire(CACHE_SHOP_TYPE_KEY,CACHE_SHOP_TYPE_TTL, TimeUnit.HOURS);
-        return Result.ok(shopTypeList);
+        return new ShopTypeSnapshot(null, body, etagOf(body));
+    }
+
+    private static String etagOf(byte[] body) {
+        return "\"" + SecureUtil.md5().digestHex(body).substring(0, 16) + "\"";
     }
 }
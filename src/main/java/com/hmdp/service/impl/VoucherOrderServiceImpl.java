@@ -2,17 +2,22 @@ package com.hmdp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import com.hmdp.dto.Result;
+import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
+import com.hmdp.mapper.SeckillVoucherMapper;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillGate;
+import com.hmdp.utils.SeckillShards;
+import com.hmdp.utils.StreamConsumerPool;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
-import org.springframework.aop.framework.AopContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -21,16 +26,21 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -54,9 +64,33 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     private RedissonClient redissonClient;
     @Resource
     private RedisIdWorker redisIdWorker;
+    @Resource
+    private SeckillVoucherMapper seckillVoucherMapper;
+    @Resource
+    private SeckillShards seckillShards;
+    @Resource
+    private SeckillGate seckillGate;
 
-    //代理对象（定义成全局变量是为了创建订单的子线程能调用到，子线程拿不到主线的代理对象）
+    //代理对象（创建订单的子线程要通过代理调用才有事务；启动时就可能有积压的消息，所以直接注入而不是等第一次下单时获取）
+    @Lazy
+    @Resource
     private IVoucherOrderService proxy;
+
+    //每次从消息队列批量读取的订单数
+    @Value("${hmdp.seckill.batch-size:100}")
+    private int batchSize;
+    //每个节点的消费线程数（每个线程是消费者组里一个独立的消费者）
+    @Value("${hmdp.seckill.consumers:4}")
+    private int consumers;
+    //消费者名前缀，为空时用「主机名:进程号」
+    @Value("${hmdp.seckill.consumer-name:}")
+    private String consumerName;
+    //其他消费者的 pending 消息空闲超过这么久就认领过来
+    @Value("${hmdp.seckill.claim-idle-millis:60000}")
+    private long claimIdleMillis;
+    //单条订单消息最多投递次数，仍创建失败的转入死信队列
+    @Value("${hmdp.seckill.max-deliveries:3}")
+    private int maxDeliveries;
     /**
      * 优惠券下单
      * @param voucherId
@@ -64,23 +98,85 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
      */
     @Override //(基于stream消息队列)
     public Result seckillVoucher(Long voucherId) {
-        //执行 lua 脚本判断是否库存不足和重复下单
+        //本地判断是否已售罄、是否在秒杀时间内（不访问 Redis）
+        if (seckillGate.isSoldOut(voucherId)) {
+            return Result.fail("已被抢光！来晚了！");
+        }
+        SeckillVoucher voucher = seckillGate.window(voucherId, id -> seckillVoucherService.query()
+                .select("voucher_id", "begin_time", "end_time").eq("voucher_id", id).one());
+        if (voucher == null) {
+            return Result.fail("秒杀券不存在！");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (voucher.getBeginTime().isAfter(now)) {
+            return Result.fail("秒杀尚未开始！");
+        }
+        if (voucher.getEndTime().isBefore(now)) {
+            return Result.fail("秒杀已结束！您来晚了");
+        }
+        //执行 lua 脚本判断是否库存不足和重复下单，成功时在脚本里分配订单id的序列号（一次 Redis 往返）
         Long userId = UserHolder.getUser().getId();//获取用户
-        long orderId = redisIdWorker.nextId("order");//生成全局唯一订单id
-        Long res = template.execute(
-                SECKILL_SCRIPT,//脚本对象
-                Collections.emptyList(), //KEYS[]（空集合）
-                voucherId.toString(), userId.toString(),String.valueOf(orderId) //ARGV[]
-        );
-        int r= Objects.requireNonNull(res).intValue(); //lua脚本执行结果
-        if(r!=0){
-            return Result.fail(r==1?"已被抢光！来晚了！":"不能二次下单");
+        LocalDateTime idTime = LocalDateTime.now();
+        long timestamp = RedisIdWorker.timestamp(idTime);//订单id的时间戳部分
+        long r;
+        if (seckillShards.isEnabled()) {
+            r = seckillSharded(voucherId, userId, timestamp, idTime);
+        } else {
+            Long res = template.execute(
+                    SECKILL_SCRIPT,//脚本对象
+                    Collections.emptyList(), //KEYS[]（空集合）
+                    voucherId.toString(), userId.toString(), String.valueOf(timestamp),
+                    RedisIdWorker.counterKey("order", idTime) //ARGV[]
+            );
+            r = Objects.requireNonNull(res); //lua脚本执行结果：序列号，-1 库存不足，-2 重复下单
+        }
+        if (r == -1) {
+            //售罄：本节点打标记并通知其他节点，之后的请求不再访问 Redis
+            seckillGate.markSoldOut(voucherId);
+            return Result.fail("已被抢光！来晚了！");
+        }
+        //下单成功或重复下单（脚本先检查了库存）都说明还有库存，清除售罄标记
+        seckillGate.markAvailable(voucherId);
+        if (r == -2) {
+            return Result.fail("不能二次下单");
         }
+        //返回订单id（与消费者按消息中的时间戳、序列号拼出的id一致）
+        return Result.ok(RedisIdWorker.compose(timestamp, r));
+    }
 
-        //获取代理对象
-        proxy = (IVoucherOrderService) AopContext.currentProxy();
-        //返回订单id
-        return Result.ok(orderId);
+    /**
+     * 分片库存下单：先在用户的主分片上判断一人一单、扣库存、分配序列号、发消息；
+     * 主分片卖完时依次从其他分片借一个库存，再回到主分片下单（借到后发现重复下单就还回去）
+     * @return 成功返回序列号，-1 库存不足，-2 重复下单
+     */
+    private long seckillSharded(Long voucherId, Long userId, long timestamp, LocalDateTime idTime) {
+        int shards = seckillShards.count();
+        int home = seckillShards.home(userId);
+        List<String> keys = Arrays.asList(seckillShards.stockKey(voucherId, home),
+                seckillShards.orderKey(voucherId, home), seckillShards.streamKey(home),
+                RedisIdWorker.counterKey(seckillShards.idKeyPrefix(home), idTime));
+        Long res = template.execute(SECKILL_SHARD_SCRIPT, keys, voucherId.toString(), userId.toString(),
+                String.valueOf(timestamp), "0", String.valueOf(shards), String.valueOf(home));
+        long r = Objects.requireNonNull(res);
+        if (r != -1) {
+            return r;
+        }
+        for (int i = 1; i < shards; i++) {
+            String stockKey = seckillShards.stockKey(voucherId, (home + i) % shards);
+            Long took = template.execute(SECKILL_TAKE_SCRIPT, Collections.singletonList(stockKey));
+            if (took == null || took == 0) {
+                continue;
+            }
+            res = template.execute(SECKILL_SHARD_SCRIPT, keys, voucherId.toString(), userId.toString(),
+                    String.valueOf(timestamp), "1", String.valueOf(shards), String.valueOf(home));
+            r = Objects.requireNonNull(res);
+            if (r < 0) {
+                //没下成单，把借来的库存还回去
+                template.opsForValue().increment(stockKey);
+            }
+            return r;
+        }
+        return -1;
     }
 
    /* @Override //（基于阻塞队列）
@@ -120,86 +216,39 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));//脚本路径
         SECKILL_SCRIPT.setResultType(Long.class);//设置返回值类型
     }
+    //分片库存模式的下单脚本和借库存脚本
+    private static final DefaultRedisScript<Long> SECKILL_SHARD_SCRIPT;
+    private static final DefaultRedisScript<Long> SECKILL_TAKE_SCRIPT;
+    static{
+        SECKILL_SHARD_SCRIPT=new DefaultRedisScript<>();
+        SECKILL_SHARD_SCRIPT.setLocation(new ClassPathResource("seckill_shard.lua"));
+        SECKILL_SHARD_SCRIPT.setResultType(Long.class);
+        SECKILL_TAKE_SCRIPT=new DefaultRedisScript<>();
+        SECKILL_TAKE_SCRIPT.setLocation(new ClassPathResource("seckill_take.lua"));
+        SECKILL_TAKE_SCRIPT.setResultType(Long.class);
+    }
     //阻塞队列
     private BlockingQueue<VoucherOrder> orderTasks = new ArrayBlockingQueue<>(1024*1024);
-    //线程池（单线程）
-    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
+    //秒杀订单消费者（多线程、多节点并行消费，分片模式下每个订单 stream 一组）
+    private final List<StreamConsumerPool> orderConsumers = new ArrayList<>();
 
-    @PostConstruct//类初始化就执行此方法，来提交子线程执行
+    @PostConstruct//类初始化就执行此方法，启动消费线程
     private void init(){
-        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
-    }
-
-    //内部类实现线程任务（基于stream消息队列）
-    private class VoucherOrderHandler implements Runnable{
-        String queueName = "stream.orders";//stream队列名
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    //1.获取消息队列中的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS stream.orders >
-                    List<MapRecord<String, Object, Object>> list = template.opsForStream().read(
-                            Consumer.from("g1", "c1"),//消费者（组名，消费者名）
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),//读取数，等待时间
-                            StreamOffset.create(queueName, ReadOffset.lastConsumed())
-                    );
-                    //2.判断消息是否获取成功
-                    if(list == null || list.isEmpty()){
-                        // 获取失败，没有消息，继续下一次循环
-                        continue;
-                    }
-                    //3.解析消息订单信息
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> map = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(map, new VoucherOrder(), true);//map -> bean
-                    //4.创建订单
-                    handleVoucherOrder(voucherOrder);
-
-                    //5.ACK确认 SACK stream.orders g1 id
-                    template.opsForStream().acknowledge(queueName,"g1",record.getId());
-                } catch (Exception e) {
-                    log.error("处理订单异常",e);
-                    handlePendingList();
-
-                }
-            }
-        }
-        //消息队列处理业务时异常，从pending-list中获取信息
-        private void handlePendingList() {
-            while (true) {
-                try {
-                    //1.获取pending-list中的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 STREAMS stream.orders >
-                    List<MapRecord<String, Object, Object>> list = template.opsForStream().read(
-                            Consumer.from("g1", "c1"),//消费者（组名，消费者名）
-                            StreamReadOptions.empty().count(1),//读取数，等待时间
-                            StreamOffset.create(queueName, ReadOffset.from("0"))
-                    );
-                    //2.判断消息是否获取成功
-                    if(list == null || list.isEmpty()){
-                        // 获取失败，pending-list没有异常消息，退出异常获取循环
-                        break;
-                    }
-                    //3.解析消息订单信息
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> map = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(map, new VoucherOrder(), true);//map -> bean
-                    //4.创建订单
-                    handleVoucherOrder(voucherOrder);
-
-                    //5.ACK确认 SACK stream.orders g1 id
-                    template.opsForStream().acknowledge(queueName,"g1",record.getId());
-                } catch (Exception e) {
-                    log.error("处理pending-list订单异常",e);
-                    try {
-                        Thread.sleep(20000);
-                    } catch (InterruptedException interruptedException) {
-                        interruptedException.printStackTrace();
-                    }
-                }
-            }
+        List<String> streams = seckillShards.streams();
+        //消费线程平均分给各个 stream，每个至少一个
+        int workers = Math.max(1, (consumers + streams.size() - 1) / streams.size());
+        for (String stream : streams) {
+            StreamConsumerPool pool = new StreamConsumerPool(template, stream, "g1", consumerName,
+                    workers, batchSize, claimIdleMillis, maxDeliveries, this::handleRecords);
+            pool.start();
+            orderConsumers.add(pool);
         }
     }
 
+    @PreDestroy
+    private void destroy(){
+        orderConsumers.forEach(StreamConsumerPool::stop);
+    }
 
     /*//内部类实现线程任务（基于阻塞队列）
     private class VoucherOrderHandler implements Runnable{
@@ -220,28 +269,21 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 
 
 
-    //创建订单（再加分布式锁做保底）
-    private void handleVoucherOrder(VoucherOrder voucherOrder) {
-        //获取用户
-        Long userId = voucherOrder.getUserId();
-        //获取锁对象
-//        SimpleRedisLock lock = new SimpleRedisLock("order"+userId,template);
-        RLock lock = redissonClient.getLock("lock:order"+userId);
-        //尝试获取锁    ---（使用Redis实现的分布式锁解决一人多单的并发问题）
-        boolean isLock = lock.tryLock();
-        if(!isLock){
-            //获取失败
-            log.error("不能二次抢购");
-            return;
-        }
-        try {
-            //用主线程的代理对象（接口）来避免事务失效
-            proxy.createVoucherOrder(voucherOrder);//创建订单
-        } finally {
-            //释放锁
-            lock.unlock();
-//            lock.unLockOfLua();
+    //批量创建订单（消费者处理成功后一次 XACK 确认这一批消息）
+    private void handleRecords(List<MapRecord<String, Object, Object>> records) {
+        List<VoucherOrder> orders = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> map = record.getValue();
+            VoucherOrder order = BeanUtil.fillBeanWithMap(map, new VoucherOrder(), true);//map -> bean
+            if (order.getId() == null) {
+                //脚本里只分配了序列号，按时间戳和序列号拼出订单id
+                order.setId(RedisIdWorker.compose(Long.parseLong(map.get("ts").toString()),
+                        Long.parseLong(map.get("seq").toString())));
+            }
+            orders.add(order);
         }
+        //用代理对象（接口）调用来避免事务失效
+        proxy.createVoucherOrders(orders);
     }
 
     /*public Result seckillVoucher2(Long voucherId) {
@@ -280,6 +322,55 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         }
     }*/
 
+    /**
+     * 批量创建订单（一个事务）
+     * 批内按（用户，优惠券）去重，一次查询过滤掉已下过单的，按优惠券分组一次扣减库存，最后多行插入
+     * @param voucherOrders
+     */
+    @Override
+    @Transactional
+    public void createVoucherOrders(List<VoucherOrder> voucherOrders) {
+        //1.批内去重（同一用户对同一张券只保留第一条）
+        Map<String, VoucherOrder> unique = new LinkedHashMap<>();
+        for (VoucherOrder order : voucherOrders) {
+            unique.putIfAbsent(order.getUserId() + ":" + order.getVoucherId(), order);
+        }
+        //2.保证一人一单：一次查出这批用户在这些券上已有的订单
+        Set<Long> userIds = voucherOrders.stream().map(VoucherOrder::getUserId).collect(Collectors.toSet());
+        Set<Long> voucherIds = voucherOrders.stream().map(VoucherOrder::getVoucherId).collect(Collectors.toSet());
+        List<VoucherOrder> existing = query().select("user_id", "voucher_id")
+                .in("user_id", userIds)
+                .in("voucher_id", voucherIds)
+                .list();
+        for (VoucherOrder order : existing) {
+            if (unique.remove(order.getUserId() + ":" + order.getVoucherId()) != null) {
+                log.error("不能二次抢购！userId={}, voucherId={}", order.getUserId(), order.getVoucherId());
+            }
+        }
+        //3.按优惠券分组扣减库存（按 id 顺序加行锁，多个消费者并发时不会互相死锁）
+        Map<Long, List<VoucherOrder>> byVoucher = unique.values().stream()
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, TreeMap::new, Collectors.toList()));
+        List<VoucherOrder> accepted = new ArrayList<>(unique.size());
+        byVoucher.forEach((voucherId, orders) -> {
+            int n = orders.size();
+            if (seckillVoucherMapper.decreaseStock(voucherId, n) == 0) {
+                //库存不够整组扣减（正常情况下 Redis 已经拦截），锁住库存行，只给前面的订单扣减剩余库存
+                SeckillVoucher voucher = seckillVoucherService.query().select("stock")
+                        .eq("voucher_id", voucherId).last("for update").one();
+                n = voucher == null ? 0 : Math.min(n, Math.max(voucher.getStock(), 0));
+                if (n > 0) {
+                    seckillVoucherMapper.decreaseStock(voucherId, n);
+                }
+                log.error("优惠券已抢光！voucherId={}，{} 个订单未创建", voucherId, orders.size() - n);
+            }
+            accepted.addAll(orders.subList(0, n));
+        });
+        //4.多行插入订单
+        if (!accepted.isEmpty()) {
+            getBaseMapper().insertBatch(accepted);
+        }
+    }
+
     /**
      * 创建订单
      * @param voucherOrder
@@ -1,21 +1,33 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopVoucherList;
 import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.SeckillShards;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
-import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_DETAIL_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_VOUCHER_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_VOUCHER_TTL;
 
 /**
  * <p>
@@ -32,15 +44,79 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     private ISeckillVoucherService seckillVoucherService;
     @Resource
     private StringRedisTemplate template;
+    @Resource
+    private CacheClient cacheClient;
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+    @Resource
+    private SeckillShards seckillShards;
 
     @Override
     public Result queryVoucherOfShop(Long shopId) {
         // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        List<Voucher> vouchers = listVoucherOfShop(shopId);
         // 返回结果
         return Result.ok(vouchers);
     }
 
+    /**
+     * 查询店铺的优惠券列表：券信息走缓存，秒杀券库存从 Redis 一次 MGET 取最新值
+     * @param shopId 店铺id
+     * @return 优惠券列表
+     */
+    @Override
+    public List<Voucher> listVoucherOfShop(Long shopId) {
+        ShopVoucherList cached = cacheClient.queryWithPassThrough(shopId, CACHE_SHOP_VOUCHER_KEY, ShopVoucherList.class,
+                id -> new ShopVoucherList(getBaseMapper().queryVoucherOfShop(id)), CACHE_SHOP_VOUCHER_TTL, TimeUnit.MINUTES);
+        if (cached == null || cached.getVouchers() == null) {
+            return Collections.emptyList();
+        }
+        return withLiveStock(cached.getVouchers());
+    }
+
+    /**
+     * 用 Redis 中的实时库存覆盖秒杀券的库存（返回副本，不修改缓存中的共享对象）
+     * @param vouchers 优惠券列表
+     * @return 带实时库存的优惠券列表
+     */
+    @Override
+    public List<Voucher> withLiveStock(List<Voucher> vouchers) {
+        List<Voucher> result = BeanUtil.copyToList(vouchers, Voucher.class);
+        //只有秒杀券（关联查询到了秒杀信息）才有库存
+        List<Voucher> seckill = result.stream().filter(v -> v.getStock() != null).collect(Collectors.toList());
+        if (seckill.isEmpty()) {
+            return result;
+        }
+        //分片模式下一张券有多个库存 key，一次 MGET 后按券求和
+        List<String> keys = seckill.stream().flatMap(v -> seckillShards.stockKeys(v.getId()).stream()).collect(Collectors.toList());
+        List<String> stocks = template.opsForValue().multiGet(keys);
+        if (stocks == null) {
+            return result;
+        }
+        int perVoucher = keys.size() / seckill.size();
+        for (int i = 0; i < seckill.size(); i++) {
+            Integer sum = null;
+            for (String stock : stocks.subList(i * perVoucher, (i + 1) * perVoucher)) {
+                if (stock != null) {
+                    sum = (sum == null ? 0 : sum) + Integer.parseInt(stock);
+                }
+            }
+            //Redis 中没有的（如未预热）保留数据库中的库存
+            if (sum != null) {
+                seckill.get(i).setStock(sum);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public void addVoucher(Voucher voucher) {
+        save(voucher);
+        //事务提交后删除店铺优惠券列表缓存
+        evictShopVouchers(voucher.getShopId());
+    }
+
     @Override
     @Transactional
     public void addSeckillVoucher(Voucher voucher) {
@@ -53,7 +129,22 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
-        //保存秒杀优惠券库存到Redis
-        template.opsForValue().set(SECKILL_STOCK_KEY+voucher.getId(),voucher.getStock().toString());
+        //保存秒杀优惠券库存到Redis（分片模式下平均拆到各分片）
+        List<String> stockKeys = seckillShards.stockKeys(voucher.getId());
+        int[] parts = SeckillShards.split(voucher.getStock(), stockKeys.size());
+        Map<String, String> stocks = new HashMap<>(stockKeys.size() * 2);
+        for (int i = 0; i < parts.length; i++) {
+            stocks.put(stockKeys.get(i), String.valueOf(parts[i]));
+        }
+        template.opsForValue().multiSet(stocks);
+        //事务提交后删除店铺优惠券列表缓存
+        evictShopVouchers(voucher.getShopId());
+    }
+
+    //店铺优惠券列表及店铺详情聚合视图都要删除
+    private void evictShopVouchers(Long shopId) {
+        if (shopId != null) {
+            cacheInvalidator.invalidate(CACHE_SHOP_VOUCHER_KEY + shopId, CACHE_SHOP_DETAIL_KEY + shopId);
+        }
     }
 }
@@ -0,0 +1,378 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑的二进制编解码器（按类结构 schema 编码）
+ * 格式：格式标记 + Base64(schema 哈希 + 按字段名排序后的各字段值)，
+ * 字段名不写入缓存，整数用变长编码，比 JSON 小很多且只需解析一次。
+ * 不带格式标记的旧数据按 JSON 解析，兼容原有缓存
+ */
+@Slf4j
+public class BinaryCacheCodec implements CacheCodec {
+
+    //格式标记（JSON 不会以 @ 开头）
+    static final String PLAIN_TAG = "@B";
+    static final String LOGICAL_TAG = "@L";
+
+    //字段值类型标记
+    private static final byte T_NULL = 0;
+    private static final byte T_STRING = 1;
+    private static final byte T_LONG = 2;
+    private static final byte T_INT = 3;
+    private static final byte T_DOUBLE = 4;
+    private static final byte T_BOOLEAN = 5;
+    private static final byte T_DATETIME = 6;
+    private static final byte T_DATE = 7;
+    private static final byte T_FLOAT = 8;
+    private static final byte T_SHORT = 9;
+    private static final byte T_BYTE = 10;
+    private static final byte T_JSON = 11;//其他类型（集合、嵌套对象等）退化为 JSON
+
+    //类结构缓存
+    private static final Map<Class<?>, Schema> SCHEMAS = new ConcurrentHashMap<>();
+
+    private final JsonCacheCodec jsonCodec = new JsonCacheCodec();
+
+    @Override
+    public String encode(Object value) {
+        if (!isBean(value)) {
+            return jsonCodec.encode(value);
+        }
+        Output out = new Output();
+        writeBean(out, value);
+        return PLAIN_TAG + out.toBase64();
+    }
+
+    @Override
+    public <R> R decode(String raw, Class<R> type) {
+        if (!raw.startsWith(PLAIN_TAG)) {
+            return jsonCodec.decode(raw, type);
+        }
+        try {
+            Input in = new Input(Base64.getDecoder().decode(raw.substring(PLAIN_TAG.length())));
+            return readBean(in, type);
+        } catch (RuntimeException e) {
+            log.warn("缓存二进制数据解析失败，type={}", type.getName(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public String encodeLogical(RedisData redisData) {
+        if (!isBean(redisData.getData())) {
+            return jsonCodec.encodeLogical(redisData);
+        }
+        Output out = new Output();
+        out.writeVarLong(redisData.getExpireTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+        writeBean(out, redisData.getData());
+        if (redisData.getRebuildMillis() != null) {
+            //重建耗时写在末尾，旧数据没有这一项
+            out.writeVarLong(redisData.getRebuildMillis());
+        }
+        return LOGICAL_TAG + out.toBase64();
+    }
+
+    @Override
+    public RedisData decodeLogical(String raw, Class<?> type) {
+        if (!raw.startsWith(LOGICAL_TAG)) {
+            return jsonCodec.decodeLogical(raw, type);
+        }
+        try {
+            Input in = new Input(Base64.getDecoder().decode(raw.substring(LOGICAL_TAG.length())));
+            LocalDateTime expireTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readVarLong()), ZoneOffset.UTC);
+            Object data = readBean(in, type);
+            if (data == null) {
+                return null;
+            }
+            Long rebuildMillis = in.hasRemaining() ? in.readVarLong() : null;
+            return RedisData.builder().expireTime(expireTime).data(data).rebuildMillis(rebuildMillis).build();
+        } catch (RuntimeException e) {
+            log.warn("缓存二进制数据解析失败，type={}", type.getName(), e);
+            return null;
+        }
+    }
+
+    //只有普通 JavaBean 用二进制编码，其余（字符串、集合、基本类型等）仍用 JSON
+    private static boolean isBean(Object value) {
+        if (value == null) {
+            return false;
+        }
+        Class<?> type = value.getClass();
+        return !(type.isArray() || type.isPrimitive() || type.isEnum()
+                || value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                || value instanceof Iterable || value instanceof Map
+                || type.getName().startsWith("java."));
+    }
+
+    private void writeBean(Output out, Object bean) {
+        Schema schema = schemaOf(bean.getClass());
+        out.writeInt(schema.hash);
+        for (Field field : schema.fields) {
+            Object v;
+            try {
+                v = field.get(bean);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("读取字段失败：" + field, e);
+            }
+            writeValue(out, v);
+        }
+    }
+
+    private <R> R readBean(Input in, Class<R> type) {
+        Schema schema = schemaOf(type);
+        if (in.readInt() != schema.hash) {
+            //类结构已变化（增删了字段），按未命中处理
+            return null;
+        }
+        R bean = schema.newInstance(type);
+        for (Field field : schema.fields) {
+            Object v = readValue(in, field);
+            if (v == null && field.getType().isPrimitive()) {
+                continue;
+            }
+            try {
+                field.set(bean, v);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("写入字段失败：" + field, e);
+            }
+        }
+        return bean;
+    }
+
+    private void writeValue(Output out, Object v) {
+        if (v == null) {
+            out.write(T_NULL);
+        } else if (v instanceof String) {
+            out.write(T_STRING);
+            out.writeString((String) v);
+        } else if (v instanceof Long) {
+            out.write(T_LONG);
+            out.writeVarLong((Long) v);
+        } else if (v instanceof Integer) {
+            out.write(T_INT);
+            out.writeVarLong((Integer) v);
+        } else if (v instanceof Double) {
+            out.write(T_DOUBLE);
+            out.writeLong(Double.doubleToLongBits((Double) v));
+        } else if (v instanceof Boolean) {
+            out.write(T_BOOLEAN);
+            out.write((Boolean) v ? 1 : 0);
+        } else if (v instanceof LocalDateTime) {
+            LocalDateTime time = (LocalDateTime) v;
+            out.write(T_DATETIME);
+            out.writeVarLong(time.toEpochSecond(ZoneOffset.UTC));
+            out.writeVarLong(time.getNano());
+        } else if (v instanceof LocalDate) {
+            out.write(T_DATE);
+            out.writeVarLong(((LocalDate) v).toEpochDay());
+        } else if (v instanceof Float) {
+            out.write(T_FLOAT);
+            out.writeInt(Float.floatToIntBits((Float) v));
+        } else if (v instanceof Short) {
+            out.write(T_SHORT);
+            out.writeVarLong((Short) v);
+        } else if (v instanceof Byte) {
+            out.write(T_BYTE);
+            out.write((Byte) v);
+        } else {
+            out.write(T_JSON);
+            out.writeString(JSONUtil.toJsonStr(v));
+        }
+    }
+
+    private Object readValue(Input in, Field field) {
+        byte t = in.read();
+        switch (t) {
+            case T_NULL:
+                return null;
+            case T_STRING:
+                return in.readString();
+            case T_LONG:
+                return in.readVarLong();
+            case T_INT:
+                return (int) in.readVarLong();
+            case T_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case T_BOOLEAN:
+                return in.read() == 1;
+            case T_DATETIME:
+                long seconds = in.readVarLong();
+                return LocalDateTime.ofEpochSecond(seconds, (int) in.readVarLong(), ZoneOffset.UTC);
+            case T_DATE:
+                return LocalDate.ofEpochDay(in.readVarLong());
+            case T_FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case T_SHORT:
+                return (short) in.readVarLong();
+            case T_BYTE:
+                return in.read();
+            case T_JSON:
+                return JSONUtil.toBean(in.readString(), field.getGenericType(), false);
+            default:
+                throw new IllegalStateException("未知的字段类型标记：" + t);
+        }
+    }
+
+    private static Schema schemaOf(Class<?> type) {
+        return SCHEMAS.computeIfAbsent(type, Schema::new);
+    }
+
+    //类结构：参与编码的字段（按字段名排序）及其哈希
+    private static class Schema {
+        final Field[] fields;
+        final int hash;
+        final Constructor<?> constructor;
+
+        Schema(Class<?> type) {
+            List<Field> list = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    int mod = f.getModifiers();
+                    if (Modifier.isStatic(mod) || Modifier.isTransient(mod)) {
+                        continue;
+                    }
+                    f.setAccessible(true);
+                    list.add(f);
+                }
+            }
+            list.sort(Comparator.comparing(Field::getName));
+            fields = list.toArray(new Field[0]);
+            StringBuilder sb = new StringBuilder(type.getName());
+            for (Field f : fields) {
+                sb.append(';').append(f.getName()).append(':').append(f.getType().getName());
+            }
+            hash = sb.toString().hashCode();
+            Constructor<?> ctor = null;
+            try {
+                ctor = type.getDeclaredConstructor();
+                ctor.setAccessible(true);
+            } catch (NoSuchMethodException ignored) {
+                //没有无参构造（如 @Builder 的类），交给 Hutool 构造
+            }
+            constructor = ctor;
+        }
+
+        @SuppressWarnings("unchecked")
+        <R> R newInstance(Class<R> type) {
+            if (constructor == null) {
+                return ReflectUtil.newInstanceIfPossible(type);
+            }
+            try {
+                return (R) constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("创建对象失败：" + type.getName(), e);
+            }
+        }
+    }
+
+    //写缓冲区
+    private static class Output {
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream(128);
+
+        void write(int b) {
+            buf.write(b);
+        }
+
+        void writeInt(int v) {
+            buf.write(v >>> 24);
+            buf.write(v >>> 16);
+            buf.write(v >>> 8);
+            buf.write(v);
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        //zigzag + 变长编码，小整数只占 1~2 个字节
+        void writeVarLong(long v) {
+            long z = (v << 1) ^ (v >> 63);
+            while ((z & ~0x7FL) != 0) {
+                buf.write((int) ((z & 0x7F) | 0x80));
+                z >>>= 7;
+            }
+            buf.write((int) z);
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            buf.write(bytes, 0, bytes.length);
+        }
+
+        String toBase64() {
+            return Base64.getEncoder().withoutPadding().encodeToString(buf.toByteArray());
+        }
+    }
+
+    //读缓冲区
+    private static class Input {
+        private final byte[] bytes;
+        private int pos;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        byte read() {
+            if (pos >= bytes.length) {
+                throw new IllegalStateException("缓存数据不完整");
+            }
+            return bytes[pos++];
+        }
+
+        boolean hasRemaining() {
+            return pos < bytes.length;
+        }
+
+        int readInt() {
+            return ((read() & 0xFF) << 24) | ((read() & 0xFF) << 16) | ((read() & 0xFF) << 8) | (read() & 0xFF);
+        }
+
+        long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        long readVarLong() {
+            long z = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = read();
+                z |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (z >>> 1) ^ -(z & 1);
+        }
+
+        String readString() {
+            int len = (int) readVarLong();
+            if (len < 0 || pos + len > bytes.length) {
+                throw new IllegalStateException("缓存数据不完整");
+            }
+            String s = new String(bytes, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.Collection;
+
+/**
+ * 布隆过滤器（用于拦截一定不存在的 id，防止缓存穿透）
+ * 判断不存在时一定不存在；判断存在时可能误判
+ */
+public interface BloomFilter {
+
+    /**
+     * 是否可能存在（未初始化完成时一律返回 true，不拦截）
+     * @param id id
+     * @return false 表示一定不存在
+     */
+    boolean mightContain(Object id);
+
+    /**
+     * 添加 id
+     * @param id id
+     */
+    void put(Object id);
+
+    /**
+     * 批量添加 id
+     * @param ids id集合
+     */
+    void putAll(Collection<?> ids);
+
+    /**
+     * 是否已初始化完成（初始化前不做拦截）
+     */
+    boolean isReady();
+
+    /**
+     * 标记初始化完成
+     */
+    void markReady();
+
+    /**
+     * 根据预计元素数和误判率计算位数组长度：m = -n * ln(p) / (ln2)^2
+     */
+    static long optimalBits(long expectedInsertions, double fpp) {
+        return (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+    }
+
+    /**
+     * 根据预计元素数和位数组长度计算哈希函数个数：k = m / n * ln2
+     */
+    static int optimalHashes(long expectedInsertions, long bits) {
+        return Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * 计算 id 对应的 k 个位下标（murmur128 的两个 64 位结果做双重哈希）
+     */
+    static long[] offsets(Object id, int hashes, long bits) {
+        long[] hash = MurmurHash.hash128(id.toString());
+        long[] offsets = new long[hashes];
+        long combined = hash[0];
+        for (int i = 0; i < hashes; i++) {
+            offsets[i] = (combined & Long.MAX_VALUE) % bits;
+            combined += hash[1];
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,75 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * 多节点各自维护的进程内布隆过滤器
+ * 新增的 id 除了写入本节点，还通过 Redis 发布订阅通知所有节点写入，
+ * 避免其他节点把刚新增的 id 判为不存在（布隆过滤器不能漏判）
+ */
+@Slf4j
+public class BroadcastBloomFilter implements BloomFilter {
+
+    private final BloomFilter local;
+    private final StringRedisTemplate template;
+    private final String channel;
+
+    /**
+     * 创建时即订阅频道（在加载已有 id 之前订阅，加载期间新增的 id 不会丢）
+     * @param local 本节点的过滤器
+     * @param template Redis 模板
+     * @param listenerContainer 发布订阅监听容器
+     * @param channel 新增 id 的通知频道
+     */
+    public BroadcastBloomFilter(BloomFilter local, StringRedisTemplate template,
+                                RedisMessageListenerContainer listenerContainer, String channel) {
+        this.local = local;
+        this.template = template;
+        this.channel = channel;
+        //位下标按 id.toString() 计算，消息体直接写入即可
+        listenerContainer.addMessageListener((message, pattern) ->
+                local.put(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(channel));
+    }
+
+    @Override
+    public boolean mightContain(Object id) {
+        return local.mightContain(id);
+    }
+
+    /**
+     * 写入本节点并通知其他节点
+     */
+    @Override
+    public void put(Object id) {
+        local.put(id);
+        try {
+            template.convertAndSend(channel, id.toString());
+        } catch (Exception e) {
+            log.error("广播布隆过滤器新增 id 失败，channel={}, id={}", channel, id, e);
+        }
+    }
+
+    /**
+     * 只写入本节点（启动加载时每个节点各自从数据库加载）
+     */
+    @Override
+    public void putAll(Collection<?> ids) {
+        local.putAll(ids);
+    }
+
+    @Override
+    public boolean isReady() {
+        return local.isReady();
+    }
+
+    @Override
+    public void markReady() {
+        local.markReady();
+    }
+}
@@ -3,32 +3,95 @@ package com.hmdp.utils;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
-import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TTL;
 
 @Component
 @Slf4j
 public class CacheClient {
     @Resource
     private StringRedisTemplate template;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+
+    //缓存重建调度器（全局共享的有界线程池）
+    @Resource
+    private CacheRebuildScheduler rebuildScheduler;
+    //缓存指标（按 key 前缀统计命中率、重建耗时等）
+    @Resource
+    private CacheMetrics metrics;
+    //热点 key 探测
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    //本地一级缓存（Redis 作为二级缓存），热点数据直接在 JVM 内命中，不走网络
+    private final LocalCache localCache = new LocalCache(CACHE_LOCAL_MAX_WEIGHT);
+    //热点 key 单独常驻的本地缓存（不会被大量冷 key 挤出一级缓存）
+    private final LocalCache hotCache = new LocalCache(CACHE_HOT_MAX_WEIGHT);
+    //本地缓存中代表“空值”的占位对象（对应 Redis 中的 ""）
+    private static final Object NULL_VALUE = new Object();
+    //缓存未命中时，同一 key 的并发查库请求合并
+    private final SingleFlight singleFlight = new SingleFlight();
+    //各 key 前缀对应的布隆过滤器（拦截一定不存在的 id）
+    private final Map<String, BloomFilter> bloomFilters = new ConcurrentHashMap<>();
+    //缓存值编解码器（默认二进制编码，旧的 JSON 数据仍可解析）
+    private CacheCodec codec = new BinaryCacheCodec();
+
+    /**
+     * 替换缓存值编解码器（容器中有 CacheCodec 类型的 Bean 时自动注入）
+     * @param codec 编解码器
+     */
+    @Autowired(required = false)
+    public void setCodec(CacheCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * 为某个 key 前缀注册布隆过滤器，查询时一定不存在的 id 直接返回 null，不查 Redis 和数据库
+     * @param keyPrefix key前缀
+     * @param bloomFilter 布隆过滤器
+     */
+    public void registerBloomFilter(String keyPrefix, BloomFilter bloomFilter) {
+        bloomFilters.put(keyPrefix, bloomFilter);
+    }
 
-    //线程池
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    @PostConstruct
+    private void init() {
+        //订阅缓存失效频道：其他节点删除缓存时，同步删除本节点的一级缓存
+        listenerContainer.addMessageListener((message, pattern) -> {
+            for (String key : new String(message.getBody(), StandardCharsets.UTF_8).split(",")) {
+                evictLocal(key);
+            }
+        }, new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
+    }
 
     /**
      * 存值
@@ -38,7 +101,10 @@ public class CacheClient {
      * @param unit 过期时间单位
      */
     public void set(String key, Object value, Long time, TimeUnit unit){
-        template.opsForValue().set(key, JSONUtil.toJsonStr(value),time,unit);
+        String raw = codec.encode(value);
+        template.opsForValue().set(key, raw,time,unit);
+        //同时写入本地缓存，本地存活时间不超过 Redis 的过期时间
+        putLocal(key, value, raw.length(), Math.min(unit.toMillis(time), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL)));
     }
 
     /**
@@ -53,7 +119,64 @@ public class CacheClient {
                 .data(value)
                 .expireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)))
                 .build();
-        template.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        String raw = codec.encodeLogical(redisData);
+        template.opsForValue().set(key, raw);
+        putLocal(key, redisData, raw.length(), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+    }
+
+    /**
+     * 删除缓存（Redis + 本节点本地缓存），并通知其他节点删除各自的本地缓存
+     * @param key 键
+     */
+    public void delete(String key){
+        template.delete(key);
+        evictLocal(key);
+        template.convertAndSend(CACHE_INVALIDATE_CHANNEL, key);
+    }
+
+    /**
+     * 批量删除缓存：管道一次删除 Redis 中的 key，并只发一条失效消息通知其他节点
+     * @param keys 键集合
+     */
+    public void deleteMany(Collection<String> keys){
+        if (keys.isEmpty()) {
+            return;
+        }
+        keys.forEach(this::evictLocal);
+        String message = String.join(",", keys);
+        template.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.del(keys.toArray(new String[0]));
+            conn.publish(CACHE_INVALIDATE_CHANNEL, message);
+            return null;
+        });
+    }
+
+    /**
+     * 只删除本节点的本地缓存
+     * @param key 键
+     */
+    public void evictLocal(String key){
+        localCache.invalidate(key);
+        hotCache.invalidate(key);
+    }
+
+    /**
+     * 只读缓存（先本地后 Redis），未命中时不查库
+     * @param id id
+     * @param keyPrefix 缓存key前缀
+     * @param type 返回类型
+     * @param <R> 返回值类型
+     * @param <ID> id类型
+     * @return 缓存的值，未命中或缓存的是空值时返回 null
+     */
+    public <R,ID> R getIfPresent(ID id, String keyPrefix, Class<R> type) {
+        Object cached = readCached(keyPrefix, keyPrefix + id, type);
+        if (cached == null) {
+            metrics.miss(keyPrefix);
+            return null;
+        }
+        return cached == NULL_VALUE ? null : type.cast(cached);
     }
 
     /**
@@ -70,27 +193,87 @@ public class CacheClient {
      */
     public <R,ID> R queryWithPassThrough(ID id, String keyPrefix, Class<R> type,
                                           Function<ID,R> dbFallback,Long time, TimeUnit unit) {
+        if (!mightExist(keyPrefix, id)) {
+            //布隆过滤器判定不存在
+            return null;
+        }
         String key = keyPrefix + id;
-        String json = template.opsForValue().get(key);
-        if (StrUtil.isNotBlank(json)) {
-            // 缓存中存在，将数据返回
-            return JSONUtil.toBean(json, type);
+        Object cached = readCached(keyPrefix, key, type);
+        if (cached != null) {
+            //命中缓存（可能是空值）
+            return cached == NULL_VALUE ? null : type.cast(cached);
         }
-        //判断是否从 Redis 获取出的是否是空值 “”
-        if (Objects.equals(json, "")) {
-            //是空值说明有缓存穿透现象，返回错误信息
+        //缓存未命中，同一 key 的并发请求合并为一次查库
+        return singleFlight.execute(key, () -> loadAndCache(keyPrefix, key, id, dbFallback, time, unit));
+    }
+
+    /**
+     * 互斥锁解决缓存击穿（进程内先合并请求，只有 leader 线程去抢 Redis 互斥锁）
+     * @param id id
+     * @param keyPrefix 缓存key前缀
+     * @param type 返回类型
+     * @param dbFallback 查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 过期时间单位
+     * @param <R> 返回值类型
+     * @param <ID> id类型
+     * @return 查询结果
+     */
+    public <R,ID> R queryWithMutex(ID id, String keyPrefix, Class<R> type,
+                                    Function<ID,R> dbFallback,Long time, TimeUnit unit) {
+        if (!mightExist(keyPrefix, id)) {
+            //布隆过滤器判定不存在
             return null;
         }
-        R resData = dbFallback.apply(id);
-        if (BeanUtil.isEmpty(resData)) {
-            //数据库没查到
-            //将空值写入 Redis 防止缓存穿透
-            template.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-            return null;
+        String key = keyPrefix + id;
+        Object cached = readCached(keyPrefix, key, type);
+        if (cached != null) {
+            return cached == NULL_VALUE ? null : type.cast(cached);
         }
-        //写入缓存
-        this.set(key,resData,time,unit);
-        return resData;
+        //本节点的并发请求合并，只有 leader 去抢分布式锁
+        return singleFlight.execute(key, () -> {
+            String lockKey = LOCK_SHOP_KEY + id;
+            //没抢到锁说明其他节点在重建，循环等待（不再递归，避免栈增长）
+            while (!tryLock(lockKey)) {
+                metrics.lockContention(keyPrefix);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("等待缓存重建被中断", e);
+                }
+                //其他节点可能已经重建好了，再查一次 Redis
+                Object rebuilt = readCached(keyPrefix, key, type, false);
+                if (rebuilt != null) {
+                    return rebuilt == NULL_VALUE ? null : type.cast(rebuilt);
+                }
+            }
+            try {
+                //获取到了锁，再检查Redis中是否已有缓存，后再决定是否查数据库
+                Object rebuilt = readCached(keyPrefix, key, type, false);
+                if (rebuilt != null) {
+                    return rebuilt == NULL_VALUE ? null : type.cast(rebuilt);
+                }
+                return loadAndCache(keyPrefix, key, id, dbFallback, time, unit);
+            } finally {
+                unlock(lockKey);
+            }
+        });
+    }
+
+    /**
+     * 逻辑过期缓存的刷新方式
+     */
+    public enum RefreshMode {
+        /**
+         * 逻辑过期后才重建
+         */
+        ON_EXPIRE,
+        /**
+         * 概率性提前刷新（XFetch）：越接近过期、上次重建越慢，越可能提前重建，
+         * 把热点 key 的重建分散开，避免同时过期后所有请求都拿到旧数据
+         */
+        EARLY_PROBABILISTIC
     }
 
     /**
@@ -107,54 +290,462 @@ public class CacheClient {
      */
     public <R,ID> R queryWithLogicalExpire(ID id, String keyPrefix, Class<R> type,
                                            Function<ID,R> dbFallback,Long time, TimeUnit unit) {
-        String key = keyPrefix + id;
-        String json = template.opsForValue().get(key);
-        if (StrUtil.isBlank(json)) {
-            // 缓存中不存在，返回null
+        return queryWithLogicalExpire(id, keyPrefix, type, dbFallback, time, unit, RefreshMode.ON_EXPIRE);
+    }
+
+    /**
+     * 互斥锁+逻辑过期时间，解决缓存击穿（可指定刷新方式）
+     * @param id id
+     * @param keyPrefix key前缀
+     * @param type 返回类型
+     * @param dbFallback 查询逻辑
+     * @param time 逻辑过期时间
+     * @param unit 过期时间单位
+     * @param mode 刷新方式
+     * @param <R> 返回类型
+     * @param <ID> id类型
+     * @return 查询结果
+     */
+    public <R,ID> R queryWithLogicalExpire(ID id, String keyPrefix, Class<R> type,
+                                           Function<ID,R> dbFallback,Long time, TimeUnit unit, RefreshMode mode) {
+        if (!mightExist(keyPrefix, id)) {
+            //布隆过滤器判定不存在
             return null;
         }
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        JSONObject date = (JSONObject) redisData.getData();
-        R res = JSONUtil.toBean(date, type);//店铺信息
-        LocalDateTime expireTime = redisData.getExpireTime();//过期时间
-        //判断缓存是否过期（expireTime属性）
-        if (expireTime.isAfter(LocalDateTime.now())) {//比较是否是当前时间之后
-            //未过期，返商铺信息
+        String key = keyPrefix + id;
+        //先查本地缓存，不需要刷新就直接返回（不走网络）
+        Object local = getLocal(key);
+        if (local instanceof RedisData) {
+            RedisData localData = (RedisData) local;
+            if (type.isInstance(localData.getData()) && !needRefresh(localData, mode)) {
+                metrics.localHit(keyPrefix);
+                return type.cast(localData.getData());
+            }
+        }
+        String raw = timedGet(keyPrefix, key);
+        if (StrUtil.isBlank(raw)) {
+            // 缓存中不存在（如更新后被删除），合并并发请求后查库重建
+            metrics.miss(keyPrefix);
+            return singleFlight.execute(key, () -> rebuildWithLogicalExpire(keyPrefix, key, id, dbFallback, time, unit));
+        }
+        RedisData redisData = timedDecodeLogical(keyPrefix, raw, type);
+        if (redisData == null) {
+            //缓存格式不兼容（类结构变化等），合并并发请求后查库重建
+            metrics.miss(keyPrefix);
+            return singleFlight.execute(key, () -> rebuildWithLogicalExpire(keyPrefix, key, id, dbFallback, time, unit));
+        }
+        R res = type.cast(redisData.getData());//店铺信息
+        //放入本地缓存（存解析好的对象，下次不用再解析）
+        putLocal(key, redisData, raw.length(), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+        //判断缓存是否需要刷新（已过期，或提前刷新模式下命中了刷新概率）
+        if (!needRefresh(redisData, mode)) {
+            //不需要，返商铺信息
+            metrics.redisHit(keyPrefix);
             return res;
         }
+        //已过期的才算返回旧数据（提前刷新时数据仍在有效期内）
+        if (isExpired(redisData)) {
+            metrics.staleServed(keyPrefix);
+        } else {
+            metrics.redisHit(keyPrefix);
+        }
         //尝试获取锁
         String lockKey;
         lockKey = LOCK_SHOP_KEY + id;
         boolean tryLock = tryLock(lockKey);
         if (!tryLock) {
             //没获取到锁，不用等待，直接返回店铺信息（旧）
+            metrics.lockContention(keyPrefix);
             return res;
         }
-        //获取到了锁，再检查Redis中信息是否没过期，后再决定是否开启独立线程（让线程完成缓存重建、释放锁），返回店铺信息
-        json = template.opsForValue().get(key);
-        if (Objects.equals(json, "")) {
-            return null;
+        //获取到了锁，再检查Redis中信息是否已被别人重建，后再决定是否开启独立线程（让线程完成缓存重建、释放锁），返回店铺信息
+        raw = timedGet(keyPrefix, key);
+        if (StrUtil.isBlank(raw)) {
+            //期间被删除（如更新后删缓存），数据仍然存在：返回手上的旧数据，下次查询时重建
+            unlock(lockKey);
+            return res;
         }
-        redisData = JSONUtil.toBean(json, RedisData.class);
-        if (redisData.getExpireTime().isAfter(LocalDateTime.now())) {
-            // 缓存中的店铺信息还没过期，将数据返回，无需重建缓存
-            return JSONUtil.toBean((JSONObject) redisData.getData(), type);
+        RedisData latest = timedDecodeLogical(keyPrefix, raw, type);
+        if (latest != null && latest.getExpireTime().isAfter(redisData.getExpireTime())) {
+            // 缓存已经被其他线程重建过，将数据返回，无需重建缓存
+            unlock(lockKey);
+            return type.cast(latest.getData());
         }
-        //开启独立线程，完成缓存重建、释放锁
-        CACHE_REBUILD_EXECUTOR.submit(()->{
+        //交给重建调度器，完成缓存重建、释放锁（异常由调度器记录）
+        boolean accepted = rebuildScheduler.submit(keyPrefix, key, () -> {
             try {
-                R r=dbFallback.apply(id);
                 //重建缓存
-                this.setWithLogicalExpire(key,r,time,unit);
-            } catch (Exception e) {
-                throw new RuntimeException();
-            }finally{
+                rebuildWithLogicalExpire(keyPrefix, key, id, dbFallback, time, unit);
+            } finally {
                 unlock(lockKey);
             }
         });
+        if (!accepted) {
+            //被去重、限流或队列已满，本次不重建，释放锁
+            unlock(lockKey);
+        }
         return res;
     }
 
+    /**
+     * 批量查询（存空值解决缓存穿透）：一次 MGET 查缓存，未命中的一次性批量查库，再用管道一次写回
+     * @param ids id集合
+     * @param keyPrefix 缓存key前缀
+     * @param type 返回类型
+     * @param batchFallback 批量查询逻辑（一次 IN 查询，返回 id -> 数据）
+     * @param time 缓存过期时间
+     * @param unit 过期时间单位
+     * @param <R> 返回值类型
+     * @param <ID> id类型
+     * @return 查询结果（与 ids 顺序一致，不存在的 id 跳过）
+     */
+    public <R,ID> List<R> queryMany(Collection<ID> ids, String keyPrefix, Class<R> type,
+                                    Function<Collection<ID>, Map<ID,R>> batchFallback, Long time, TimeUnit unit) {
+        return queryManyInternal(ids, keyPrefix, type, batchFallback, time, unit, false);
+    }
+
+    /**
+     * 批量查询（逻辑过期格式的缓存）：已过期的数据照常返回，并交给重建调度器在后台逐个重建
+     * @param ids id集合
+     * @param keyPrefix 缓存key前缀
+     * @param type 返回类型
+     * @param batchFallback 批量查询逻辑（一次 IN 查询，返回 id -> 数据）
+     * @param time 逻辑过期时间
+     * @param unit 过期时间单位
+     * @param <R> 返回值类型
+     * @param <ID> id类型
+     * @return 查询结果（与 ids 顺序一致，不存在的 id 跳过）
+     */
+    public <R,ID> List<R> queryManyWithLogicalExpire(Collection<ID> ids, String keyPrefix, Class<R> type,
+                                                     Function<Collection<ID>, Map<ID,R>> batchFallback, Long time, TimeUnit unit) {
+        return queryManyInternal(ids, keyPrefix, type, batchFallback, time, unit, true);
+    }
+
+    private <R,ID> List<R> queryManyInternal(Collection<ID> ids, String keyPrefix, Class<R> type,
+                                             Function<Collection<ID>, Map<ID,R>> batchFallback,
+                                             Long time, TimeUnit unit, boolean logical) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        //1.去重（保持顺序），并过滤掉布隆过滤器判定不存在的id
+        List<ID> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinctIds.removeIf(id -> !mightExist(keyPrefix, id));
+        Map<ID, Object> found = new HashMap<>(distinctIds.size() * 2);
+        //2.先查本地缓存
+        List<ID> remoteIds = new ArrayList<>();
+        for (ID id : distinctIds) {
+            Object local = getLocal(keyPrefix + id, false);
+            if (logical && local instanceof RedisData && type.isInstance(((RedisData) local).getData())
+                    && !needRefresh((RedisData) local, RefreshMode.ON_EXPIRE)) {
+                metrics.localHit(keyPrefix);
+                found.put(id, ((RedisData) local).getData());
+            } else if (!logical && (local == NULL_VALUE || type.isInstance(local))) {
+                if (local == NULL_VALUE) {
+                    metrics.nullHit(keyPrefix);
+                } else {
+                    metrics.localHit(keyPrefix);
+                }
+                found.put(id, local);
+            } else {
+                remoteIds.add(id);
+            }
+        }
+        //3.一次 MGET 查 Redis
+        List<ID> missIds = new ArrayList<>();
+        if (!remoteIds.isEmpty()) {
+            List<String> keys = remoteIds.stream().map(id -> keyPrefix + id).collect(Collectors.toList());
+            long begin = System.nanoTime();
+            List<String> raws = template.opsForValue().multiGet(keys);
+            metrics.recordRedis(keyPrefix, System.nanoTime() - begin);
+            for (int i = 0; i < remoteIds.size(); i++) {
+                ID id = remoteIds.get(i);
+                String key = keys.get(i);
+                String raw = raws == null ? null : raws.get(i);
+                if (!logical && "".equals(raw)) {
+                    //缓存的空值
+                    metrics.nullHit(keyPrefix);
+                    found.put(id, NULL_VALUE);
+                    putLocal(key, NULL_VALUE, 1, TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+                    continue;
+                }
+                if (StrUtil.isBlank(raw)) {
+                    missIds.add(id);
+                    continue;
+                }
+                if (logical) {
+                    RedisData redisData = timedDecodeLogical(keyPrefix, raw, type);
+                    if (redisData == null) {
+                        missIds.add(id);
+                        continue;
+                    }
+                    found.put(id, redisData.getData());
+                    putLocal(key, redisData, raw.length(), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+                    if (needRefresh(redisData, RefreshMode.ON_EXPIRE)) {
+                        //已过期，先返回旧数据，后台重建
+                        metrics.staleServed(keyPrefix);
+                        submitRebuild(keyPrefix, id, batchFallback, time, unit);
+                    } else {
+                        metrics.redisHit(keyPrefix);
+                    }
+                } else {
+                    Object value = timedDecode(keyPrefix, raw, type);
+                    if (value == null) {
+                        missIds.add(id);
+                        continue;
+                    }
+                    metrics.redisHit(keyPrefix);
+                    found.put(id, value);
+                    putLocal(key, value, raw.length(), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+                }
+            }
+        }
+        //4.未命中的一次性批量查库，再用管道一次写回
+        if (!missIds.isEmpty()) {
+            missIds.forEach(id -> metrics.miss(keyPrefix));
+            long begin = System.nanoTime();
+            Map<ID, R> loaded = batchFallback.apply(missIds);
+            metrics.recordRebuild(keyPrefix, System.nanoTime() - begin);
+            Map<String, Object> toWrite = new LinkedHashMap<>();
+            for (ID id : missIds) {
+                R r = loaded == null ? null : loaded.get(id);
+                if (r != null) {
+                    found.put(id, r);
+                    toWrite.put(keyPrefix + id, r);
+                } else if (!logical) {
+                    //数据库没查到，写空值防止缓存穿透
+                    toWrite.put(keyPrefix + id, NULL_VALUE);
+                }
+            }
+            writeMany(toWrite, time, unit, logical);
+        }
+        //5.按传入顺序组装结果
+        List<R> result = new ArrayList<>(distinctIds.size());
+        for (ID id : distinctIds) {
+            Object value = found.get(id);
+            if (value != null && value != NULL_VALUE) {
+                result.add(type.cast(value));
+            }
+        }
+        return result;
+    }
+
+    //管道批量写缓存（一次网络往返）
+    private void writeMany(Map<String, Object> values, Long time, TimeUnit unit, boolean logical) {
+        if (values.isEmpty()) {
+            return;
+        }
+        Map<String, String> raws = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            String raw;
+            if (value == NULL_VALUE) {
+                raw = "";
+                putLocal(key, NULL_VALUE, 1, TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+            } else if (logical) {
+                RedisData redisData = RedisData.builder()
+                        .data(value)
+                        .expireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)))
+                        .build();
+                raw = codec.encodeLogical(redisData);
+                putLocal(key, redisData, raw.length(), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+            } else {
+                raw = codec.encode(value);
+                putLocal(key, value, raw.length(), Math.min(unit.toMillis(time), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL)));
+            }
+            raws.put(key, raw);
+        });
+        template.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            raws.forEach((key, raw) -> {
+                if (raw.isEmpty()) {
+                    conn.setEx(key, TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL), raw);
+                } else if (logical) {
+                    conn.set(key, raw);
+                } else {
+                    conn.setEx(key, unit.toSeconds(time), raw);
+                }
+            });
+            return null;
+        });
+    }
+
+    //批量查询中发现的过期数据：后台抢锁后单独重建
+    private <R,ID> void submitRebuild(String keyPrefix, ID id, Function<Collection<ID>, Map<ID,R>> batchFallback,
+                                      Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        rebuildScheduler.submit(keyPrefix, key, () -> {
+            String lockKey = LOCK_SHOP_KEY + id;
+            if (!tryLock(lockKey)) {
+                return;
+            }
+            try {
+                rebuildWithLogicalExpire(keyPrefix, key, id, i -> {
+                    Map<ID, R> loaded = batchFallback.apply(Collections.singletonList(i));
+                    return loaded == null ? null : loaded.get(i);
+                }, time, unit);
+            } finally {
+                unlock(lockKey);
+            }
+        });
+    }
+
+    //查库并写入逻辑过期缓存，同时记录查库耗时（未命中由请求路径记录，后台刷新不算未命中）
+    private <R,ID> R rebuildWithLogicalExpire(String keyPrefix, String key, ID id, Function<ID,R> dbFallback,
+                                              Long time, TimeUnit unit) {
+        long begin = System.nanoTime();
+        R r = dbFallback.apply(id);
+        long cost = System.nanoTime() - begin;
+        metrics.recordRebuild(keyPrefix, cost);
+        if (r == null) {
+            return null;
+        }
+        RedisData redisData = RedisData.builder()
+                .data(r)
+                .expireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)))
+                .rebuildMillis(TimeUnit.NANOSECONDS.toMillis(cost))
+                .build();
+        String raw = codec.encodeLogical(redisData);
+        template.opsForValue().set(key, raw);
+        putLocal(key, redisData, raw.length(), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+        return r;
+    }
+
+    //判断逻辑过期缓存是否需要刷新
+    private boolean needRefresh(RedisData redisData, RefreshMode mode) {
+        long now = System.currentTimeMillis();
+        long expireAt = redisData.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (now >= expireAt || mode == RefreshMode.ON_EXPIRE) {
+            return now >= expireAt;
+        }
+        //XFetch：now - delta * beta * ln(rand) >= expireAt 时提前刷新，
+        //rand 取 (0,1]，-ln(rand) 是指数分布，越接近过期、重建耗时 delta 越大，刷新概率越高
+        long delta = redisData.getRebuildMillis() != null ? redisData.getRebuildMillis() : CACHE_REBUILD_DEFAULT_MILLIS;
+        double rand = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return now - delta * CACHE_EARLY_REFRESH_BETA * Math.log(rand) >= expireAt;
+    }
+
+    //读本地缓存（热点 key 先查常驻缓存），同时记录一次访问用于热点探测
+    private Object getLocal(String key) {
+        return getLocal(key, true);
+    }
+
+    //批量查询、等锁后的重查不算一次请求，不计入热点探测
+    private Object getLocal(String key, boolean record) {
+        boolean hot = record ? hotKeyDetector.record(key) : hotKeyDetector.isHot(key);
+        if (!hot) {
+            return localCache.get(key);
+        }
+        Object value = hotCache.get(key);
+        if (value == null) {
+            //刚成为热点：从一级缓存提升到常驻缓存
+            value = localCache.get(key);
+            if (value != null) {
+                hotCache.put(key, value, 1, TimeUnit.SECONDS.toMillis(CACHE_HOT_TTL));
+            }
+        }
+        return value;
+    }
+
+    //写本地缓存，热点 key 同时写入常驻缓存
+    private void putLocal(String key, Object value, long weight, long ttlMillis) {
+        localCache.put(key, value, weight, ttlMillis);
+        if (hotKeyDetector.isHot(key)) {
+            hotCache.put(key, value, weight, Math.min(ttlMillis, TimeUnit.SECONDS.toMillis(CACHE_HOT_TTL)));
+        }
+    }
+
+    //逻辑过期时间是否已过
+    private boolean isExpired(RedisData redisData) {
+        return !redisData.getExpireTime().isAfter(LocalDateTime.now());
+    }
+
+    //布隆过滤器判断 id 是否可能存在（没注册过滤器的前缀不拦截）
+    private boolean mightExist(String keyPrefix, Object id) {
+        BloomFilter bloomFilter = bloomFilters.get(keyPrefix);
+        if (bloomFilter == null || bloomFilter.mightContain(id)) {
+            return true;
+        }
+        metrics.rejected(keyPrefix);
+        return false;
+    }
+
+    //读 Redis 并记录耗时
+    private String timedGet(String keyPrefix, String key) {
+        long begin = System.nanoTime();
+        String raw = template.opsForValue().get(key);
+        metrics.recordRedis(keyPrefix, System.nanoTime() - begin);
+        return raw;
+    }
+
+    //反序列化并记录耗时
+    private <R> R timedDecode(String keyPrefix, String raw, Class<R> type) {
+        long begin = System.nanoTime();
+        R value = codec.decode(raw, type);
+        metrics.recordDecode(keyPrefix, System.nanoTime() - begin);
+        return value;
+    }
+
+    //反序列化逻辑过期数据并记录耗时
+    private RedisData timedDecodeLogical(String keyPrefix, String raw, Class<?> type) {
+        long begin = System.nanoTime();
+        RedisData redisData = codec.decodeLogical(raw, type);
+        metrics.recordDecode(keyPrefix, System.nanoTime() - begin);
+        return redisData;
+    }
+
+    //读取普通缓存（先本地后 Redis）：返回 null 表示未命中，NULL_VALUE 表示缓存的是空值
+    private Object readCached(String keyPrefix, String key, Class<?> type) {
+        return readCached(keyPrefix, key, type, true);
+    }
+
+    //record 为 false 时不计入热点探测（重试读取）
+    private Object readCached(String keyPrefix, String key, Class<?> type, boolean record) {
+        Object local = getLocal(key, record);
+        if (local == NULL_VALUE) {
+            metrics.nullHit(keyPrefix);
+            return local;
+        }
+        if (type.isInstance(local)) {
+            metrics.localHit(keyPrefix);
+            return local;
+        }
+        String raw = timedGet(keyPrefix, key);
+        //判断是否从 Redis 获取出的是否是空值 “”
+        if ("".equals(raw)) {
+            //是空值说明有缓存穿透现象
+            metrics.nullHit(keyPrefix);
+            putLocal(key, NULL_VALUE, 1, TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+            return NULL_VALUE;
+        }
+        if (StrUtil.isBlank(raw)) {
+            return null;
+        }
+        Object value = timedDecode(keyPrefix, raw, type);
+        if (value != null) {
+            // 缓存中存在，放入本地缓存
+            metrics.redisHit(keyPrefix);
+            putLocal(key, value, raw.length(), TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+        }
+        //解析失败（格式不兼容）按未命中处理
+        return value;
+    }
+
+    //查库并写入缓存（查不到写空值防止缓存穿透）
+    private <R,ID> R loadAndCache(String keyPrefix, String key, ID id, Function<ID,R> dbFallback, Long time, TimeUnit unit) {
+        metrics.miss(keyPrefix);
+        long begin = System.nanoTime();
+        R resData = dbFallback.apply(id);
+        metrics.recordRebuild(keyPrefix, System.nanoTime() - begin);
+        if (BeanUtil.isEmpty(resData)) {
+            //数据库没查到
+            //将空值写入 Redis 防止缓存穿透
+            template.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            putLocal(key, NULL_VALUE, 1, TimeUnit.SECONDS.toMillis(CACHE_LOCAL_TTL));
+            return null;
+        }
+        //写入缓存
+        this.set(key,resData,time,unit);
+        return resData;
+    }
 
     //尝试获取互斥锁
     private boolean tryLock(String key) {
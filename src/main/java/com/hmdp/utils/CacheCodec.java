@@ -0,0 +1,39 @@
+package com.hmdp.utils;
+
+/**
+ * 缓存值编解码器（CacheClient 写入/读取 Redis 时使用）
+ * 实现类负责把对象转换成 Redis 中保存的字符串，以及反向解析
+ */
+public interface CacheCodec {
+
+    /**
+     * 编码普通缓存值
+     * @param value 值对象
+     * @return 存入 Redis 的字符串
+     */
+    String encode(Object value);
+
+    /**
+     * 解码普通缓存值
+     * @param raw Redis 中的字符串
+     * @param type 目标类型
+     * @param <R> 目标类型
+     * @return 解析结果，格式不兼容（如类结构已变化）时返回 null
+     */
+    <R> R decode(String raw, Class<R> type);
+
+    /**
+     * 编码带逻辑过期时间的缓存值
+     * @param redisData 逻辑过期数据
+     * @return 存入 Redis 的字符串
+     */
+    String encodeLogical(RedisData redisData);
+
+    /**
+     * 解码带逻辑过期时间的缓存值（一次解析完成，data 已是目标类型）
+     * @param raw Redis 中的字符串
+     * @param type data 的类型
+     * @return 逻辑过期数据，格式不兼容时返回 null
+     */
+    RedisData decodeLogical(String raw, Class<?> type);
+}
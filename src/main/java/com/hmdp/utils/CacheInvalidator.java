@@ -0,0 +1,129 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 缓存失效流水线
+ * 业务在事务内登记要删除的缓存 key，事务提交后才入队（不在事务中占用 Redis 往返），
+ * 后台线程批量取出 key 用管道一次删除，并在一段时间后再删一次（延迟双删），
+ * 避免并发的缓存重建在提交前读到旧数据、删除后又把旧数据写回
+ */
+@Slf4j
+@Component
+public class CacheInvalidator {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    //待删除的 key
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>(CACHE_INVALIDATE_QUEUE_CAPACITY);
+    //延迟双删的定时线程
+    private final ScheduledExecutorService delayedExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "cache-invalidate-delayed");
+        t.setDaemon(true);
+        return t;
+    });
+    private Thread worker;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    private void init() {
+        worker = new Thread(this::drainLoop, "cache-invalidate");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 登记需要删除的缓存 key：有事务时在事务提交后入队，没有事务时立即入队
+     * @param keys 缓存key
+     */
+    public void invalidate(String... keys) {
+        invalidate(Arrays.asList(keys));
+    }
+
+    /**
+     * 登记需要删除的缓存 key：有事务时在事务提交后入队，没有事务时立即入队
+     * @param keys 缓存key集合
+     */
+    public void invalidate(Collection<String> keys) {
+        List<String> copy = new ArrayList<>(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(copy);
+                }
+            });
+        } else {
+            enqueue(copy);
+        }
+    }
+
+    private void enqueue(List<String> keys) {
+        //本节点的本地缓存立即删除（无网络开销）
+        keys.forEach(cacheClient::evictLocal);
+        for (String key : keys) {
+            if (!queue.offer(key)) {
+                //队列满了，退化为同步删除
+                log.warn("缓存失效队列已满，同步删除 key={}", key);
+                cacheClient.delete(key);
+            }
+        }
+    }
+
+    //后台线程：批量取出 key，管道删除，并安排延迟第二次删除
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<String> batch = new ArrayList<>(CACHE_INVALIDATE_BATCH_SIZE);
+                batch.add(first);
+                queue.drainTo(batch, CACHE_INVALIDATE_BATCH_SIZE - 1);
+                cacheClient.deleteMany(batch);
+                delayedExecutor.schedule(() -> deleteQuietly(batch), CACHE_DOUBLE_DELETE_DELAY, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("批量删除缓存失败", e);
+            }
+        }
+    }
+
+    private void deleteQuietly(List<String> batch) {
+        try {
+            cacheClient.deleteMany(batch);
+        } catch (Exception e) {
+            log.error("延迟删除缓存失败", e);
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() throws InterruptedException {
+        //停止前把队列中剩余的 key 删完
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        delayedExecutor.shutdown();
+    }
+}
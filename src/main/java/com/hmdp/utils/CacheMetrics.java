@@ -0,0 +1,157 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存指标（按 key 前缀统计），通过 Micrometer 导出，在 /actuator/metrics 查看：
+ * cache.requests（result=hit/null_hit/miss/stale/rejected，level=local/redis/db）、
+ * cache.rebuild（查库重建耗时）、cache.lock.contention（抢锁失败次数）、
+ * cache.redis（Redis 读耗时）、cache.decode（反序列化耗时），以及重建队列的 gauge
+ */
+@Component
+public class CacheMetrics {
+
+    private final MeterRegistry registry;
+    //各 key 前缀的指标（避免每次请求都去注册表里查找）
+    private final Map<String, PrefixMeters> meters = new ConcurrentHashMap<>();
+
+    public CacheMetrics(MeterRegistry registry, CacheRebuildScheduler rebuildScheduler) {
+        this.registry = registry;
+        Gauge.builder("cache.rebuild.queue", rebuildScheduler, CacheRebuildScheduler::queueDepth)
+                .description("排队中的缓存重建任务数")
+                .register(registry);
+        Gauge.builder("cache.rebuild.active", rebuildScheduler, CacheRebuildScheduler::activeThreads)
+                .description("正在执行重建的线程数")
+                .register(registry);
+    }
+
+    /**
+     * 本地缓存命中
+     * @param keyPrefix key前缀
+     */
+    public void localHit(String keyPrefix) {
+        of(keyPrefix).localHit.increment();
+    }
+
+    /**
+     * Redis 命中
+     * @param keyPrefix key前缀
+     */
+    public void redisHit(String keyPrefix) {
+        of(keyPrefix).redisHit.increment();
+    }
+
+    /**
+     * 命中缓存的空值
+     * @param keyPrefix key前缀
+     */
+    public void nullHit(String keyPrefix) {
+        of(keyPrefix).nullHit.increment();
+    }
+
+    /**
+     * 未命中（需要查库）
+     * @param keyPrefix key前缀
+     */
+    public void miss(String keyPrefix) {
+        of(keyPrefix).miss.increment();
+    }
+
+    /**
+     * 返回了已过期的旧数据（逻辑过期）
+     * @param keyPrefix key前缀
+     */
+    public void staleServed(String keyPrefix) {
+        of(keyPrefix).stale.increment();
+    }
+
+    /**
+     * 被布隆过滤器拦截
+     * @param keyPrefix key前缀
+     */
+    public void rejected(String keyPrefix) {
+        of(keyPrefix).rejected.increment();
+    }
+
+    /**
+     * 抢互斥锁失败
+     * @param keyPrefix key前缀
+     */
+    public void lockContention(String keyPrefix) {
+        of(keyPrefix).lockContention.increment();
+    }
+
+    /**
+     * 记录查库重建耗时
+     * @param keyPrefix key前缀
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordRebuild(String keyPrefix, long nanos) {
+        of(keyPrefix).rebuild.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录 Redis 读耗时
+     * @param keyPrefix key前缀
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordRedis(String keyPrefix, long nanos) {
+        of(keyPrefix).redis.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录反序列化耗时
+     * @param keyPrefix key前缀
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordDecode(String keyPrefix, long nanos) {
+        of(keyPrefix).decode.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private PrefixMeters of(String keyPrefix) {
+        return meters.computeIfAbsent(keyPrefix, p -> new PrefixMeters(registry, p));
+    }
+
+    //某个 key 前缀的全部指标
+    private static class PrefixMeters {
+        final Counter localHit;
+        final Counter redisHit;
+        final Counter nullHit;
+        final Counter miss;
+        final Counter stale;
+        final Counter rejected;
+        final Counter lockContention;
+        final Timer rebuild;
+        final Timer redis;
+        final Timer decode;
+
+        PrefixMeters(MeterRegistry registry, String prefix) {
+            localHit = requests(registry, prefix, "hit", "local");
+            redisHit = requests(registry, prefix, "hit", "redis");
+            nullHit = requests(registry, prefix, "null_hit", "redis");
+            miss = requests(registry, prefix, "miss", "db");
+            stale = requests(registry, prefix, "stale", "redis");
+            rejected = requests(registry, prefix, "rejected", "bloom");
+            lockContention = Counter.builder("cache.lock.contention").tag("prefix", prefix).register(registry);
+            rebuild = Timer.builder("cache.rebuild").tag("prefix", prefix).register(registry);
+            redis = Timer.builder("cache.redis").tag("prefix", prefix).register(registry);
+            decode = Timer.builder("cache.decode").tag("prefix", prefix).register(registry);
+        }
+
+        private static Counter requests(MeterRegistry registry, String prefix, String result, String level) {
+            return Counter.builder("cache.requests")
+                    .tag("prefix", prefix)
+                    .tag("result", result)
+                    .tag("level", level)
+                    .register(registry);
+        }
+    }
+}
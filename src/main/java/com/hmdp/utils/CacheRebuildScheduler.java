@@ -0,0 +1,204 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存重建调度器（全局共享）
+ * 有界队列 + 同一 key 排队去重 + 按 key 前缀限流，数据库变慢时重建任务不会无限堆积，
+ * 并统计队列长度、重建耗时、失败次数等指标
+ */
+@Slf4j
+@Component
+public class CacheRebuildScheduler {
+
+    /**
+     * 队列满时的拒绝策略
+     */
+    public enum RejectPolicy {
+        /**
+         * 直接丢弃（调用方继续返回旧数据，下次访问再触发重建）
+         */
+        DISCARD,
+        /**
+         * 由调用线程自己执行重建
+         */
+        CALLER_RUNS
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final RejectPolicy rejectPolicy;
+    private final int defaultPermitsPerSecond;
+    //排队或执行中的 key，用于去重
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    //各 key 前缀的限流器
+    private final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    //统计指标
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public CacheRebuildScheduler(@Value("${hmdp.cache.rebuild.threads:10}") int threads,
+                                 @Value("${hmdp.cache.rebuild.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${hmdp.cache.rebuild.reject-policy:DISCARD}") RejectPolicy rejectPolicy,
+                                 @Value("${hmdp.cache.rebuild.permits-per-second:200}") int defaultPermitsPerSecond,
+                                 @Value("#{${hmdp.cache.rebuild.rate-limits:{:}}}") Map<String, Integer> rateLimits) {
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "cache-rebuild-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.rejectPolicy = rejectPolicy;
+        this.defaultPermitsPerSecond = defaultPermitsPerSecond;
+        //按 key 前缀单独配置的限流
+        rateLimits.forEach(this::setRateLimit);
+    }
+
+    /**
+     * 设置某个 key 前缀每秒最多提交的重建任务数（不设置则使用默认值）
+     * @param keyPrefix key前缀
+     * @param permitsPerSecond 每秒许可数
+     */
+    public void setRateLimit(String keyPrefix, int permitsPerSecond) {
+        limiters.put(keyPrefix, new RateLimiter(permitsPerSecond));
+    }
+
+    /**
+     * 提交重建任务
+     * @param keyPrefix key前缀（限流维度）
+     * @param key 缓存key（去重维度）
+     * @param task 重建逻辑
+     * @return 是否被接受（false 时调用方需自行释放已获取的资源，例如互斥锁）
+     */
+    public boolean submit(String keyPrefix, String key, Runnable task) {
+        if (!pendingKeys.add(key)) {
+            //同一个 key 已在排队或重建中
+            deduplicated.incrementAndGet();
+            return false;
+        }
+        if (!limiters.computeIfAbsent(keyPrefix, p -> new RateLimiter(defaultPermitsPerSecond)).tryAcquire()) {
+            pendingKeys.remove(key);
+            rateLimited.incrementAndGet();
+            return false;
+        }
+        Runnable wrapped = () -> run(key, task);
+        try {
+            executor.execute(wrapped);
+            submitted.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            if (rejectPolicy == RejectPolicy.CALLER_RUNS) {
+                submitted.incrementAndGet();
+                wrapped.run();
+                return true;
+            }
+            pendingKeys.remove(key);
+            log.warn("缓存重建队列已满，丢弃重建任务，key={}", key);
+            return false;
+        }
+    }
+
+    private void run(String key, Runnable task) {
+        long begin = System.nanoTime();
+        try {
+            task.run();
+            succeeded.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("缓存重建失败，key={}", key, e);
+        } finally {
+            pendingKeys.remove(key);
+            long cost = System.nanoTime() - begin;
+            totalNanos.addAndGet(cost);
+            maxNanos.accumulateAndGet(cost, Math::max);
+        }
+    }
+
+    /**
+     * 当前排队中的任务数
+     */
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 正在执行重建的线程数
+     */
+    public int activeThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 重建指标快照
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long finished = succeeded.get() + failed.get();
+        stats.put("queueDepth", queueDepth());
+        stats.put("activeThreads", activeThreads());
+        stats.put("pendingKeys", pendingKeys.size());
+        stats.put("submitted", submitted.get());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("rejected", rejected.get());
+        stats.put("avgMillis", finished == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / finished));
+        stats.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+        return stats;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdown();
+    }
+
+    //令牌桶限流器
+    private static class RateLimiter {
+        private final double permitsPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastNanos = System.nanoTime();
+
+        RateLimiter(int permitsPerSecond) {
+            this.capacity = Math.max(1, permitsPerSecond);
+            this.permitsPerNano = capacity / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastNanos) * permitsPerNano);
+            lastNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.hmdp.utils;
+
+/**
+ * 与 Redis GEO 一致的 GeoHash 计算
+ * Redis 把经纬度各量化成 26 位整数，纬度放偶数位、经度放奇数位交错成 52 位，作为 ZSET 的 score；
+ * 前缀相同的 score 落在同一个网格里，一个网格对应一段连续的 score 区间，可以直接 ZRANGEBYSCORE
+ */
+public class GeoHash {
+
+    public static final double LAT_MIN = -85.05112878;
+    public static final double LAT_MAX = 85.05112878;
+    public static final double LON_MIN = -180;
+    public static final double LON_MAX = 180;
+    //Redis 使用的最大精度（每个维度的位数）
+    public static final int MAX_STEP = 26;
+    //Redis 计算距离使用的地球半径（米）
+    public static final double EARTH_RADIUS = 6372797.560856;
+    //每度纬度对应的米数
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+
+    private GeoHash() {
+    }
+
+    /**
+     * 计算 step 精度下的网格编号（step=26 时与 Redis 的 score 一致）
+     * @param lon 经度
+     * @param lat 纬度
+     * @param step 每个维度的位数
+     * @return 2*step 位的网格编号
+     */
+    public static long encode(double lon, double lat, int step) {
+        return interleave(latIndex(lat, step), lonIndex(lon, step));
+    }
+
+    /**
+     * 纬度在 step 精度下的网格下标
+     */
+    public static long latIndex(double lat, int step) {
+        return index(lat, LAT_MIN, LAT_MAX, step);
+    }
+
+    /**
+     * 经度在 step 精度下的网格下标
+     */
+    public static long lonIndex(double lon, int step) {
+        return index(lon, LON_MIN, LON_MAX, step);
+    }
+
+    /**
+     * 按网格下标组装网格编号
+     * @param latIndex 纬度下标
+     * @param lonIndex 经度下标
+     * @return 网格编号
+     */
+    public static long interleave(long latIndex, long lonIndex) {
+        return spread(latIndex) | (spread(lonIndex) << 1);
+    }
+
+    /**
+     * 网格对应的 score 区间起点（含）
+     * @param hash 网格编号
+     * @param step 精度
+     */
+    public static long scoreMin(long hash, int step) {
+        return hash << (2 * (MAX_STEP - step));
+    }
+
+    /**
+     * 网格对应的 score 区间终点（不含）
+     * @param hash 网格编号
+     * @param step 精度
+     */
+    public static long scoreMax(long hash, int step) {
+        return (hash + 1) << (2 * (MAX_STEP - step));
+    }
+
+    /**
+     * 把 Redis 的 score 解码成网格中心的经纬度（与 Redis GEOPOS 的结果一致）
+     * @param score 52 位 score
+     * @return [经度, 纬度]
+     */
+    public static double[] decode(long score) {
+        long latIdx = squash(score);
+        long lonIdx = squash(score >>> 1);
+        double latCell = (LAT_MAX - LAT_MIN) / (1L << MAX_STEP);
+        double lonCell = (LON_MAX - LON_MIN) / (1L << MAX_STEP);
+        double lat = LAT_MIN + (latIdx + 0.5) * latCell;
+        double lon = LON_MIN + (lonIdx + 0.5) * lonCell;
+        return new double[]{Math.max(LON_MIN, Math.min(LON_MAX, lon)), Math.max(LAT_MIN, Math.min(LAT_MAX, lat))};
+    }
+
+    /**
+     * 纬度方向一个网格的高度（度）
+     */
+    public static double latCellDegrees(int step) {
+        return (LAT_MAX - LAT_MIN) / (1L << step);
+    }
+
+    /**
+     * 经度方向一个网格的宽度（度）
+     */
+    public static double lonCellDegrees(int step) {
+        return (LON_MAX - LON_MIN) / (1L << step);
+    }
+
+    /**
+     * 选出网格边长不小于 meters 的最精细的 step
+     * @param meters 网格最小边长（米）
+     * @param lat 所在纬度（经度方向的网格宽度随纬度变窄）
+     */
+    public static int stepForCellMeters(double meters, double lat) {
+        double cos = Math.max(0.01, Math.cos(Math.toRadians(lat)));
+        int step = MAX_STEP;
+        while (step > 1 && (latCellDegrees(step) * METERS_PER_DEGREE < meters
+                || lonCellDegrees(step) * METERS_PER_DEGREE * cos < meters)) {
+            step--;
+        }
+        return step;
+    }
+
+    /**
+     * 纬度方向 meters 米对应的度数
+     */
+    public static double latDegrees(double meters) {
+        return meters / METERS_PER_DEGREE;
+    }
+
+    /**
+     * 经度方向 meters 米对应的度数
+     */
+    public static double lonDegrees(double meters, double lat) {
+        return meters / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(lat))));
+    }
+
+    /**
+     * 两点间的球面距离（米），与 Redis GEODIST 的算法一致
+     */
+    public static double distance(double lon1, double lat1, double lon2, double lat2) {
+        double lat1r = Math.toRadians(lat1);
+        double lat2r = Math.toRadians(lat2);
+        double u = Math.sin((lat2r - lat1r) / 2);
+        double v = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        return 2.0 * EARTH_RADIUS * Math.asin(Math.sqrt(u * u + Math.cos(lat1r) * Math.cos(lat2r) * v * v));
+    }
+
+    /**
+     * 点到经纬度矩形的最近距离（米），点在矩形内时为 0
+     */
+    public static double minDistance(double lon, double lat, double minLon, double minLat, double maxLon, double maxLat) {
+        double nearLon = Math.max(minLon, Math.min(maxLon, lon));
+        double nearLat = Math.max(minLat, Math.min(maxLat, lat));
+        return distance(lon, lat, nearLon, nearLat);
+    }
+
+    /**
+     * 点到经纬度矩形的最远距离（米），取四个角中最远的
+     */
+    public static double maxDistance(double lon, double lat, double minLon, double minLat, double maxLon, double maxLat) {
+        double farLon = Math.abs(lon - minLon) > Math.abs(maxLon - lon) ? minLon : maxLon;
+        double farLat = Math.abs(lat - minLat) > Math.abs(maxLat - lat) ? minLat : maxLat;
+        return distance(lon, lat, farLon, farLat);
+    }
+
+    private static long index(double v, double min, double max, int step) {
+        double offset = (Math.max(min, Math.min(max, v)) - min) / (max - min);
+        long idx = (long) (offset * (1L << step));
+        return Math.min(idx, (1L << step) - 1);
+    }
+
+    //把低 32 位的每一位隔一位展开（...b2 b1 b0 -> ...0 b2 0 b1 0 b0）
+    private static long spread(long x) {
+        x &= 0xFFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    //spread 的逆运算：取出偶数位
+    private static long squash(long x) {
+        x &= 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+}
@@ -0,0 +1,152 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 附近店铺查询结果的本地短时缓存
+ * 用户坐标按 GeoHash 网格量化，同一网格、同一类型的请求共用一份候选集：
+ * 候选集以网格中心为圆心、半径再加上半个网格对角线查出（带坐标），命中后按用户的真实坐标重新计算距离排序。
+ * 候选集被 limit 截断时，只有距离不超过「最远候选到中心的距离 - 半对角线」的结果保证准确，
+ * 凑不够要查的页就把候选集扩大重新加载，扩到上限还不够返回 null，由调用方直接查询
+ */
+@Component
+public class GeoResultCache {
+
+    /**
+     * 候选店铺（坐标用于按用户真实位置重新计算距离）
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Candidate {
+        private Long id;
+        private double x;
+        private double y;
+    }
+
+    /**
+     * 按坐标查询候选店铺：以 (x, y) 为圆心、radius 米内最近的 limit 个，按距离升序
+     */
+    @FunctionalInterface
+    public interface Loader {
+        List<Candidate> load(double x, double y, double radius, int limit);
+    }
+
+    //一个网格的候选集
+    private static class Entry {
+        final List<Candidate> candidates;
+        //加载时的 limit
+        final int limit;
+        //候选集是否完整（没有被 limit 截断）
+        final boolean complete;
+        //最远的候选到网格中心的距离
+        final double farthest;
+
+        Entry(List<Candidate> candidates, int limit, double farthest) {
+            this.candidates = candidates;
+            this.limit = limit;
+            this.complete = candidates.size() < limit;
+            this.farthest = farthest;
+        }
+    }
+
+    private final boolean enabled;
+    private final double cellMeters;
+    private final long ttlMillis;
+    private final int margin;
+    private final int maxCandidates;
+    private final LocalCache cache;
+
+    public GeoResultCache(@Value("${hmdp.geo.result-cache.enabled:true}") boolean enabled,
+                          @Value("${hmdp.geo.result-cache.cell-meters:100}") double cellMeters,
+                          @Value("${hmdp.geo.result-cache.ttl-millis:3000}") long ttlMillis,
+                          @Value("${hmdp.geo.result-cache.margin:20}") int margin,
+                          @Value("${hmdp.geo.result-cache.max-candidates:1000}") int maxCandidates,
+                          @Value("${hmdp.geo.result-cache.max-weight:4194304}") long maxWeight) {
+        this.enabled = enabled;
+        this.cellMeters = cellMeters;
+        this.ttlMillis = ttlMillis;
+        this.margin = margin;
+        this.maxCandidates = maxCandidates;
+        this.cache = new LocalCache(maxWeight);
+    }
+
+    /**
+     * 查询距离 (x, y) 最近的 limit 个店铺（radius 米内）
+     * @param typeId 店铺类型
+     * @param x 用户经度
+     * @param y 用户纬度
+     * @param radius 搜索半径（米）
+     * @param limit 条数（当前页的结束位置）
+     * @param loader 未命中时查询候选集
+     * @return 按距离升序的结果；候选集不足以保证结果准确时返回 null
+     */
+    public List<GeoSearcher.Hit> nearest(Integer typeId, double x, double y, double radius, int limit, Loader loader) {
+        if (!enabled) {
+            return null;
+        }
+        //1.量化到网格，网格中心和半对角线
+        int step = GeoHash.stepForCellMeters(cellMeters, y);
+        long latIdx = GeoHash.latIndex(y, step);
+        long lonIdx = GeoHash.lonIndex(x, step);
+        double centerY = GeoHash.LAT_MIN + (latIdx + 0.5) * GeoHash.latCellDegrees(step);
+        double centerX = GeoHash.LON_MIN + (lonIdx + 0.5) * GeoHash.lonCellDegrees(step);
+        double halfDiagonal = GeoHash.distance(centerX, centerY,
+                centerX + GeoHash.lonCellDegrees(step) / 2, centerY + GeoHash.latCellDegrees(step) / 2);
+        //2.查本地缓存，未命中则从网格中心查一份候选集
+        String key = typeId + ":" + step + ":" + GeoHash.interleave(latIdx, lonIdx);
+        Entry entry = (Entry) cache.get(key);
+        if (entry == null) {
+            entry = load(key, loader, centerX, centerY, radius + halfDiagonal, Math.min(maxCandidates, limit + margin));
+        }
+        //3.按用户真实坐标重新计算距离，候选集不够就扩大重新加载
+        List<GeoSearcher.Hit> hits = select(entry, x, y, radius, limit, halfDiagonal);
+        while (hits == null && entry.limit < maxCandidates) {
+            entry = load(key, loader, centerX, centerY, radius + halfDiagonal, Math.min(maxCandidates, entry.limit * 4));
+            hits = select(entry, x, y, radius, limit, halfDiagonal);
+        }
+        return hits;
+    }
+
+    private Entry load(String key, Loader loader, double centerX, double centerY, double radius, int limit) {
+        List<Candidate> candidates = loader.load(centerX, centerY, radius, limit);
+        double farthest = 0;
+        for (Candidate c : candidates) {
+            farthest = Math.max(farthest, GeoHash.distance(centerX, centerY, c.getX(), c.getY()));
+        }
+        Entry entry = new Entry(candidates, limit, farthest);
+        cache.put(key, entry, candidates.size() * 32L + 1, ttlMillis);
+        return entry;
+    }
+
+    //从候选集中选出准确的前 limit 个
+    private static List<GeoSearcher.Hit> select(Entry entry, double x, double y, double radius, int limit, double halfDiagonal) {
+        //候选集之外的店铺到用户的距离都不小于 bound
+        double bound = entry.complete ? radius : Math.min(radius, entry.farthest - halfDiagonal);
+        List<GeoSearcher.Hit> hits = new ArrayList<>();
+        for (Candidate c : entry.candidates) {
+            double d = GeoHash.distance(x, y, c.getX(), c.getY());
+            if (d <= bound) {
+                hits.add(new GeoSearcher.Hit(c.getId(), d));
+            }
+        }
+        if (hits.size() < limit && bound < radius) {
+            //bound 之外可能还有更近的店铺没在候选集里
+            return null;
+        }
+        hits.sort(GeoSearcher.ORDER);
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * 清空缓存（店铺位置变化时调用）
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,142 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按环形区域查询 GEO 集合
+ * 找出与 [innerRadius, outerRadius) 环相交的 GeoHash 网格，每个网格是一段连续的 score 区间，
+ * 用管道一次 ZRANGEBYSCORE 取回，再按与 Redis 相同的算法计算距离。
+ * 只读取这一环内的成员，不会像 GEOSEARCH + limit 那样把内圈的数据再读一遍
+ */
+@Component
+public class GeoSearcher {
+
+    //网格边长至少取外半径的 1/8，控制每次查询的网格数量
+    private static final int CELLS_PER_RADIUS = 8;
+
+    @Resource
+    private StringRedisTemplate template;
+
+    /**
+     * GEO 查询结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Hit {
+        private Long id;
+        //距离（米）
+        private double distance;
+    }
+
+    /**
+     * 距离升序、距离相同按 id 升序
+     */
+    public static final Comparator<Hit> ORDER = Comparator.comparingDouble(Hit::getDistance).thenComparing(Hit::getId);
+
+    /**
+     * 查询环形区域内的成员
+     * @param key GEO 集合的 key
+     * @param x 中心经度
+     * @param y 中心纬度
+     * @param innerRadius 内半径（米，含）
+     * @param outerRadius 外半径（米，不含）
+     * @return 环内的成员（距离升序）
+     */
+    public List<Hit> searchRing(String key, double x, double y, double innerRadius, double outerRadius) {
+        return searchRing(Collections.singletonList(key), x, y, innerRadius, outerRadius);
+    }
+
+    /**
+     * 在多个 GEO 集合中查询环形区域内的成员（所有集合在同一个管道里查询）
+     * @param keys GEO 集合的 key
+     * @param x 中心经度
+     * @param y 中心纬度
+     * @param innerRadius 内半径（米，含）
+     * @param outerRadius 外半径（米，不含）
+     * @return 环内的成员（距离升序）
+     */
+    public List<Hit> searchRing(Collection<String> keys, double x, double y, double innerRadius, double outerRadius) {
+        List<long[]> ranges = ringRanges(x, y, innerRadius, outerRadius);
+        if (ranges.isEmpty() || keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> results = template.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String key : keys) {
+                for (long[] range : ranges) {
+                    //score 是 52 位整数，double 可以精确表示，区间终点不含所以减 1
+                    conn.zRangeByScoreWithScores(key, range[0], range[1] - 1);
+                }
+            }
+            return null;
+        });
+        List<Hit> hits = new ArrayList<>();
+        for (Object result : results) {
+            if (!(result instanceof Set)) {
+                continue;
+            }
+            for (Object o : (Set<?>) result) {
+                TypedTuple<?> tuple = (TypedTuple<?>) o;
+                double[] pos = GeoHash.decode(tuple.getScore().longValue());
+                double distance = GeoHash.distance(x, y, pos[0], pos[1]);
+                if (distance >= innerRadius && distance < outerRadius) {
+                    hits.add(new Hit(Long.valueOf(String.valueOf(tuple.getValue())), distance));
+                }
+            }
+        }
+        hits.sort(ORDER);
+        return hits;
+    }
+
+    //与环相交的网格对应的 score 区间（已排序并合并相邻区间）
+    List<long[]> ringRanges(double x, double y, double innerRadius, double outerRadius) {
+        int step = GeoHash.stepForCellMeters(Math.max(outerRadius - innerRadius, outerRadius / CELLS_PER_RADIUS), y);
+        double dLat = GeoHash.latDegrees(outerRadius);
+        double dLon = GeoHash.lonDegrees(outerRadius, y);
+        long latFrom = GeoHash.latIndex(y - dLat, step);
+        long latTo = GeoHash.latIndex(y + dLat, step);
+        long lonFrom = GeoHash.lonIndex(x - dLon, step);
+        long lonTo = GeoHash.lonIndex(x + dLon, step);
+        double latCell = GeoHash.latCellDegrees(step);
+        double lonCell = GeoHash.lonCellDegrees(step);
+        List<long[]> ranges = new ArrayList<>();
+        for (long i = latFrom; i <= latTo; i++) {
+            double minLat = GeoHash.LAT_MIN + i * latCell;
+            for (long j = lonFrom; j <= lonTo; j++) {
+                double minLon = GeoHash.LON_MIN + j * lonCell;
+                //整个网格都在环外（太远或完全在内圈里）就跳过
+                if (GeoHash.minDistance(x, y, minLon, minLat, minLon + lonCell, minLat + latCell) >= outerRadius
+                        || GeoHash.maxDistance(x, y, minLon, minLat, minLon + lonCell, minLat + latCell) < innerRadius) {
+                    continue;
+                }
+                long hash = GeoHash.interleave(i, j);
+                ranges.add(new long[]{GeoHash.scoreMin(hash, step), GeoHash.scoreMax(hash, step)});
+            }
+        }
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last[1] == range[0]) {
+                last[1] = range[1];
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,199 @@
+package com.hmdp.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 热点 key 探测器
+ * 用 Count-Min Sketch 近似统计每个 key 的访问次数（内存固定，与 key 数量无关），
+ * 每个统计窗口结束时所有计数减半（衰减），估计值超过阈值的 key 判定为热点，最多保留 topK 个
+ */
+@Component
+public class HotKeyDetector {
+
+    //每一行哈希的种子
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final AtomicIntegerArray[] rows;
+    private final int mask;
+    private final long threshold;
+    private final int topK;
+    private final long windowMillis;
+    //当前的热点 key -> 进入热点（或上次刷新）时的估计访问次数
+    private final Map<String, Long> hotKeys = new ConcurrentHashMap<>();
+    //热点已满 topK 个时其中最小的访问次数（缓存起来，不用每次扫描），未满时为 0
+    private volatile long coldest;
+    private ScheduledExecutorService decayExecutor;
+
+    public HotKeyDetector(@Value("${hmdp.cache.hot-key.width:16384}") int width,
+                          @Value("${hmdp.cache.hot-key.threshold:500}") long threshold,
+                          @Value("${hmdp.cache.hot-key.top-k:100}") int topK,
+                          @Value("${hmdp.cache.hot-key.window-millis:1000}") long windowMillis) {
+        //宽度取 2 的幂，用位运算代替取模
+        int w = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+        this.rows = new AtomicIntegerArray[SEEDS.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new AtomicIntegerArray(w);
+        }
+        this.mask = w - 1;
+        this.threshold = threshold;
+        this.topK = topK;
+        this.windowMillis = windowMillis;
+    }
+
+    @PostConstruct
+    private void init() {
+        decayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hot-key-decay");
+            t.setDaemon(true);
+            return t;
+        });
+        decayExecutor.scheduleAtFixedRate(this::decay, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次访问
+     * @param key 缓存key
+     * @return 该 key 当前是否是热点
+     */
+    public boolean record(String key) {
+        int h = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < rows.length; i++) {
+            min = Math.min(min, rows[i].incrementAndGet(index(h, i)));
+        }
+        if (min < threshold) {
+            return hotKeys.containsKey(key);
+        }
+        Long count = hotKeys.get(key);
+        if (count != null) {
+            //已经是热点：访问次数翻倍时才刷新记录的次数，不是每次访问都写
+            if (min >= count * 2) {
+                refresh(key, min);
+            }
+            return true;
+        }
+        //热点已满时，要比最冷的热点多出 1/4 才替换它，避免两个差不多热的 key 每次访问都互相替换
+        long floor = coldest;
+        if (floor > 0 && min <= floor + floor / 4) {
+            return false;
+        }
+        return admit(key, min);
+    }
+
+    /**
+     * 判断 key 当前是否是热点（不计数）
+     * @param key 缓存key
+     */
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 估计某个 key 在当前窗口内的访问次数
+     * @param key 缓存key
+     */
+    public long estimate(String key) {
+        int h = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < rows.length; i++) {
+            min = Math.min(min, rows[i].get(index(h, i)));
+        }
+        return min;
+    }
+
+    /**
+     * 衰减：所有计数减半，估计值跌破阈值的 key 不再是热点
+     */
+    public void decay() {
+        for (AtomicIntegerArray row : rows) {
+            for (int i = 0; i < row.length(); i++) {
+                if (row.get(i) != 0) {
+                    row.updateAndGet(i, cur -> cur >>> 1);
+                }
+            }
+        }
+        synchronized (this) {
+            hotKeys.replaceAll((key, count) -> estimate(key));
+            hotKeys.values().removeIf(count -> count < threshold / 2);
+            coldest = computeColdest();
+        }
+    }
+
+    /**
+     * 当前热点 key（按访问次数从高到低）
+     */
+    public List<Map<String, Object>> hotKeys() {
+        List<Map<String, Object>> list = new ArrayList<>(hotKeys.size());
+        hotKeys.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(e -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("key", e.getKey());
+                    item.put("count", e.getValue());
+                    item.put("estimate", estimate(e.getKey()));
+                    list.add(item);
+                });
+        return list;
+    }
+
+    //加入热点，超过 topK 个时移除访问次数最少的热点（只在新 key 成为热点时执行）
+    private synchronized boolean admit(String key, long count) {
+        if (hotKeys.containsKey(key)) {
+            return true;
+        }
+        if (hotKeys.size() >= topK) {
+            Map.Entry<String, Long> min = hotKeys.entrySet().stream()
+                    .min(Map.Entry.comparingByValue())
+                    .orElse(null);
+            if (min != null && count <= min.getValue()) {
+                return false;
+            }
+            if (min != null) {
+                hotKeys.remove(min.getKey());
+            }
+        }
+        hotKeys.put(key, count);
+        coldest = computeColdest();
+        return true;
+    }
+
+    //刷新已有热点的访问次数
+    private synchronized void refresh(String key, long count) {
+        if (hotKeys.replace(key, count) != null) {
+            coldest = computeColdest();
+        }
+    }
+
+    //热点已满时最小的访问次数，未满时为 0（任何超过阈值的 key 都可以加入）
+    private long computeColdest() {
+        if (hotKeys.size() < topK) {
+            return 0;
+        }
+        return hotKeys.values().stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (decayExecutor != null) {
+            decayExecutor.shutdown();
+        }
+    }
+}
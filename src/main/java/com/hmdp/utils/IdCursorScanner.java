@@ -0,0 +1,47 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.hmdp.utils.SystemConstants.SCAN_BATCH_SIZE;
+
+/**
+ * 按 id 游标分批读取整张表：where id > 上一批最大id order by id limit n
+ * 不用 offset 深分页，也不会一次把整张表读进内存（启动加载索引、布隆过滤器、GEO 全量重建共用）
+ */
+public class IdCursorScanner {
+
+    private IdCursorScanner() {
+    }
+
+    /**
+     * 分批读取
+     * @param mapper mapper
+     * @param wrapper 查询的列（必须包含 id）和额外条件，每批复制后再加上游标条件
+     * @param idGetter 取 id
+     * @param pageConsumer 处理每一批
+     * @param <T> 实体类型
+     * @return 读取的总条数
+     */
+    public static <T> long scan(BaseMapper<T> mapper, QueryWrapper<T> wrapper, Function<T, Long> idGetter,
+                                Consumer<List<T>> pageConsumer) {
+        long lastId = 0;
+        long count = 0;
+        while (true) {
+            List<T> page = mapper.selectList(wrapper.clone()
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("limit " + SCAN_BATCH_SIZE));
+            if (page.isEmpty()) {
+                return count;
+            }
+            pageConsumer.accept(page);
+            count += page.size();
+            lastId = idGetter.apply(page.get(page.size() - 1));
+        }
+    }
+}
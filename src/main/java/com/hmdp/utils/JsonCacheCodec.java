@@ -0,0 +1,35 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+/**
+ * 基于 Hutool JSON 的编解码器（原有的缓存格式）
+ */
+public class JsonCacheCodec implements CacheCodec {
+
+    @Override
+    public String encode(Object value) {
+        return JSONUtil.toJsonStr(value);
+    }
+
+    @Override
+    public <R> R decode(String raw, Class<R> type) {
+        return JSONUtil.toBean(raw, type);
+    }
+
+    @Override
+    public String encodeLogical(RedisData redisData) {
+        return JSONUtil.toJsonStr(redisData);
+    }
+
+    @Override
+    public RedisData decodeLogical(String raw, Class<?> type) {
+        RedisData redisData = JSONUtil.toBean(raw, RedisData.class);
+        if (redisData.getExpireTime() == null || !(redisData.getData() instanceof JSONObject)) {
+            return null;
+        }
+        redisData.setData(JSONUtil.toBean((JSONObject) redisData.getData(), type));
+        return redisData;
+    }
+}
@@ -0,0 +1,69 @@
+package com.hmdp.utils;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内布隆过滤器（基于 long 数组的位图，每个节点各自维护一份）
+ */
+public class LocalBloomFilter implements BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private volatile boolean ready;
+
+    /**
+     * @param expectedInsertions 预计元素数
+     * @param fpp 期望误判率
+     */
+    public LocalBloomFilter(long expectedInsertions, double fpp) {
+        long m = BloomFilter.optimalBits(expectedInsertions, fpp);
+        this.words = new AtomicLongArray((int) ((m + 63) >>> 6));
+        this.bits = (long) words.length() << 6;
+        this.hashes = BloomFilter.optimalHashes(expectedInsertions, bits);
+    }
+
+    @Override
+    public boolean mightContain(Object id) {
+        if (!ready) {
+            return true;
+        }
+        for (long offset : BloomFilter.offsets(id, hashes, bits)) {
+            if ((words.get((int) (offset >>> 6)) & (1L << offset)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void put(Object id) {
+        for (long offset : BloomFilter.offsets(id, hashes, bits)) {
+            int index = (int) (offset >>> 6);
+            long mask = 1L << offset;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    @Override
+    public void putAll(Collection<?> ids) {
+        ids.forEach(this::put);
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+}
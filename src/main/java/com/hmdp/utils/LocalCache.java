@@ -0,0 +1,188 @@
+package com.hmdp.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内本地缓存（一级缓存）
+ * 按 key 分段加锁，每段是一个按访问顺序排列的 LinkedHashMap（LRU），
+ * 每个条目带自己的过期时间和权重，段内总权重超过上限时从最久未访问的条目开始淘汰
+ */
+public class LocalCache {
+
+    //分段数（2的幂）
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+
+    /**
+     * @param maxWeight 缓存总权重上限（平均分给每个分段）
+     */
+    public LocalCache(long maxWeight) {
+        long segmentWeight = Math.max(1, maxWeight / SEGMENT_COUNT);
+        segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentWeight);
+        }
+    }
+
+    /**
+     * 取值
+     * @param key 键
+     * @return 缓存的值，不存在或已过期返回 null
+     */
+    public Object get(String key) {
+        return segmentFor(key).get(key, System.currentTimeMillis());
+    }
+
+    /**
+     * 存值
+     * @param key 键
+     * @param value 值对象
+     * @param weight 权重（一般取序列化后的长度）
+     * @param ttlMillis 存活时间（毫秒）
+     */
+    public void put(String key, Object value, long weight, long ttlMillis) {
+        if (value == null || ttlMillis <= 0) {
+            return;
+        }
+        segmentFor(key).put(key, value, Math.max(1, weight), System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * 删除某个 key
+     */
+    public void invalidate(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * 清空所有缓存
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 当前缓存条目数
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 当前缓存总权重
+     */
+    public long weight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);//高位参与运算，分段更均匀
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    //缓存条目
+    private static class Entry {
+        final Object value;
+        final long weight;
+        final long expireAt;
+
+        Entry(Object value, long weight, long expireAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+
+    //分段（每段一把锁）
+    private static class Segment {
+        private final long maxWeight;
+        private long totalWeight;
+        //accessOrder=true，按访问顺序排列，头部是最久未访问的
+        private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(64, 0.75f, true);
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized Object get(String key, long now) {
+            Entry entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expireAt <= now) {
+                //已过期，顺手删掉
+                map.remove(key);
+                totalWeight -= entry.weight;
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(String key, Object value, long weight, long expireAt) {
+            if (weight > maxWeight) {
+                //单个条目比整段还大，不缓存
+                remove(key);
+                return;
+            }
+            Entry old = map.put(key, new Entry(value, weight, expireAt));
+            if (old != null) {
+                totalWeight -= old.weight;
+            }
+            totalWeight += weight;
+            evict(System.currentTimeMillis());
+        }
+
+        synchronized void remove(String key) {
+            Entry old = map.remove(key);
+            if (old != null) {
+                totalWeight -= old.weight;
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+            totalWeight = 0;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized long weight() {
+            return totalWeight;
+        }
+
+        //超出权重上限时，从最久未访问的条目开始淘汰（过期条目顺便清掉）
+        private void evict(long now) {
+            Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+            while (totalWeight > maxWeight && it.hasNext()) {
+                Entry entry = it.next().getValue();
+                it.remove();
+                totalWeight -= entry.weight;
+            }
+            //顺带清理头部已过期的条目
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                if (e.getValue().expireAt > now) {
+                    break;
+                }
+                it.remove();
+                totalWeight -= e.getValue().weight;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.hmdp.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * long -> int 的开放寻址哈希表（线性探测），键值都是基本类型，不产生装箱对象
+ * 用于按 id 找回它在有序列表中的下标；只增不删，非线程安全
+ */
+public class LongIndexMap {
+
+    private static final int ABSENT = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIndexMap(int expectedSize) {
+        //负载因子不超过 0.5
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+        mask = capacity - 1;
+    }
+
+    /**
+     * 以 id 在列表中的下标建表（重复的 id 保留第一次出现的下标）
+     * @param ids id列表
+     * @return id -> 下标
+     */
+    public static LongIndexMap of(List<Long> ids) {
+        LongIndexMap map = new LongIndexMap(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            map.putIfAbsent(ids.get(i), i);
+        }
+        return map;
+    }
+
+    /**
+     * 不存在时放入
+     * @param key 键
+     * @param value 值（不能为负数）
+     * @return 已存在时返回原来的值，否则返回 -1
+     */
+    public int putIfAbsent(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value 不能为负数：" + value);
+        }
+        int slot = slot(key);
+        if (values[slot] != ABSENT) {
+            return values[slot];
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return ABSENT;
+    }
+
+    /**
+     * 查询
+     * @param key 键
+     * @return 值，不存在时返回 -1
+     */
+    public int get(long key) {
+        return values[slot(key)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //键所在的槽位，或者探测到的第一个空槽
+    private int slot(long key) {
+        int i = mix(key) & mask;
+        while (values[i] != ABSENT && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, ABSENT);
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != ABSENT) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    //打散自增 id 的低位
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,64 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 营业时间判断
+ * 格式如 10:00-22:00，多段用逗号分隔（11:00-13:50,17:00-20:50），结束时间早于开始时间表示营业到次日（11:30-03:00）
+ */
+public class OpenHours {
+
+    private OpenHours() {
+    }
+
+    /**
+     * 判断某个时刻是否在营业时间内
+     * @param openHours 营业时间
+     * @param minuteOfDay 当天的第几分钟（0~1439）
+     * @return 是否营业；营业时间为空或格式无法识别时返回 true（不过滤）
+     */
+    public static boolean isOpen(String openHours, int minuteOfDay) {
+        if (StrUtil.isBlank(openHours)) {
+            return true;
+        }
+        boolean parsed = false;
+        for (String range : openHours.split("[,，]")) {
+            String[] parts = range.trim().split("-");
+            if (parts.length != 2) {
+                continue;
+            }
+            int start = parseMinute(parts[0]);
+            int end = parseMinute(parts[1]);
+            if (start < 0 || end < 0) {
+                continue;
+            }
+            parsed = true;
+            boolean open = start <= end
+                    ? minuteOfDay >= start && minuteOfDay < end
+                    //跨天营业
+                    : minuteOfDay >= start || minuteOfDay < end;
+            if (open) {
+                return true;
+            }
+        }
+        return !parsed;
+    }
+
+    //解析 HH:mm 为当天的第几分钟（允许 24:00），格式不对返回 -1
+    private static int parseMinute(String time) {
+        String[] hm = time.trim().split(":");
+        if (hm.length != 2) {
+            return -1;
+        }
+        try {
+            int h = Integer.parseInt(hm[0].trim());
+            int m = Integer.parseInt(hm[1].trim());
+            if (h < 0 || h > 24 || m < 0 || m > 59) {
+                return -1;
+            }
+            return Math.min(h * 60 + m, 24 * 60);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.collection.CollectionUtil;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 基于 Redis 位图的布隆过滤器（多个节点共享一份）
+ * 查询用一条 BITFIELD 命令一次取出 k 个位，只需一次网络往返。
+ * 位图 key 带上位数和哈希函数个数（key:位数:k），参数变了自动换一份新位图；
+ * 全量加载完成后才写入完成标记（位图key:loaded），其他节点只认这个标记，不认位图是否存在
+ */
+public class RedisBloomFilter implements BloomFilter {
+
+    private final StringRedisTemplate template;
+    private final String key;
+    private final String loadedKey;
+    private final long bits;
+    private final int hashes;
+    private volatile boolean ready;
+
+    /**
+     * @param template Redis 模板
+     * @param key 位图 key
+     * @param expectedInsertions 预计元素数
+     * @param fpp 期望误判率
+     */
+    public RedisBloomFilter(StringRedisTemplate template, String key, long expectedInsertions, double fpp) {
+        this.template = template;
+        this.bits = BloomFilter.optimalBits(expectedInsertions, fpp);
+        this.hashes = BloomFilter.optimalHashes(expectedInsertions, bits);
+        this.key = key + ":" + bits + ":" + hashes;
+        this.loadedKey = this.key + ":loaded";
+    }
+
+    @Override
+    public boolean mightContain(Object id) {
+        if (!ready) {
+            return true;
+        }
+        BitFieldSubCommands commands = BitFieldSubCommands.create();
+        for (long offset : BloomFilter.offsets(id, hashes, bits)) {
+            commands = commands.get(BitFieldSubCommands.BitFieldType.unsigned(1)).valueAt(offset);
+        }
+        List<Long> values = template.opsForValue().bitField(key, commands);
+        if (CollectionUtil.isEmpty(values)) {
+            //位图不存在（如被误删），不拦截
+            return true;
+        }
+        for (Long v : values) {
+            if (v == null || v == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void put(Object id) {
+        BitFieldSubCommands commands = BitFieldSubCommands.create();
+        for (long offset : BloomFilter.offsets(id, hashes, bits)) {
+            commands = commands.set(BitFieldSubCommands.BitFieldType.unsigned(1)).valueAt(offset).to(1);
+        }
+        template.opsForValue().bitField(key, commands);
+    }
+
+    @Override
+    public void putAll(Collection<?> ids) {
+        //管道批量写入
+        template.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Object id : ids) {
+                for (long offset : BloomFilter.offsets(id, hashes, bits)) {
+                    conn.setBit(key, offset, true);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 位图是否已经完整加载过（有节点加载完成后写入的标记；正在加载或加载中途失败的都不算）
+     */
+    public boolean isLoaded() {
+        return Boolean.TRUE.equals(template.hasKey(loadedKey));
+    }
+
+    /**
+     * 全量加载完成后写入完成标记
+     */
+    public void markLoaded() {
+        template.opsForValue().set(loadedKey, "1");
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+}
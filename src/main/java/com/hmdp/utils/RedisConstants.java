@@ -11,15 +11,46 @@ public class RedisConstants {
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
 
-    public static final Long CACHE_SHOP_TYPE_TTL = 1L;
-    public static final String CACHE_SHOP_TYPE_KEY = "cache:shopTypeList:";
+    public static final Long CACHE_USER_TTL = 30L;
+    public static final String CACHE_USER_KEY = "cache:user:";//用户公开信息（昵称、头像）
+
+    public static final Long CACHE_SHOP_DETAIL_TTL = 30L;//店铺详情聚合视图（秒）
+    public static final String CACHE_SHOP_DETAIL_KEY = "cache:shop:detail:";
+
+    public static final Long CACHE_SHOP_VOUCHER_TTL = 30L;
+    public static final String CACHE_SHOP_VOUCHER_KEY = "cache:voucher:shop:";//店铺的优惠券列表（不含实时库存）
+
+    public static final String CACHE_SHOP_TYPE_KEY = "cache:shopType:snapshot";//店铺类型列表（已序列化的响应体）
+    public static final String CACHE_SHOP_TYPE_VERSION_KEY = "cache:shopType:version";//店铺类型列表的版本号，变化后各节点重新加载
+
+    public static final Long CACHE_LOCAL_TTL = 5L;//本地一级缓存存活时间（秒）
+    public static final Long CACHE_LOCAL_MAX_WEIGHT = 32L * 1024 * 1024;//本地一级缓存总权重上限（约等于缓存字符数）
+    public static final Long CACHE_REBUILD_DEFAULT_MILLIS = 100L;//没有记录重建耗时时使用的默认值（毫秒）
+    public static final double CACHE_EARLY_REFRESH_BETA = 1.0;//提前刷新系数，越大越早刷新
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";//跨节点删除本地缓存的频道（消息为逗号分隔的 key）
+    public static final Long CACHE_HOT_TTL = 5L;//热点 key 常驻本地缓存的存活时间（秒）
+    public static final Long CACHE_HOT_MAX_WEIGHT = 4L * 1024 * 1024;//热点常驻缓存的总权重上限（约 4MB）
+    public static final int CACHE_INVALIDATE_QUEUE_CAPACITY = 100000;//待删除缓存 key 队列上限
+    public static final int CACHE_INVALIDATE_BATCH_SIZE = 200;//每批删除的 key 数
+    public static final Long CACHE_DOUBLE_DELETE_DELAY = 500L;//延迟双删的间隔（毫秒）
+
+    public static final String BLOOM_SHOP_KEY = "bloom:shop";//店铺id布隆过滤器位图（redis 模式下实际 key 后接 :位数:哈希函数个数）
+    public static final String BLOOM_BLOG_KEY = "bloom:blog";//笔记id布隆过滤器位图
+    public static final String BLOOM_ADD_CHANNEL = "bloom:add:";//布隆过滤器新增 id 的通知频道前缀（后接位图 key，消息为 id），local 模式下各节点据此写入本地位图
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_SHOP_GEO_NAME = "shop:geo:rebuild";//GEO 索引全量重建的锁名（SimpleRedisLock 会加 lock: 前缀）
+    public static final Long LOCK_SHOP_GEO_TTL = 600L;//GEO 索引全量重建的锁和临时 key 的存活时间（秒）
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";//已下单用户集合
+    public static final String SECKILL_ORDER_STREAM = "stream.orders";//秒杀订单消息队列（分片模式下为 stream.orders:{分片号}）
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:sold-out";//秒杀券售罄的通知频道（消息为优惠券id），各节点据此打本地售罄标记
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    public static final Long SHOP_GEO_CATCH_UP_SECONDS = 5L;//GEO 索引重建后补齐变更时向前多取的秒数
+    public static final String SHOP_CHANGE_CHANNEL = "shop:change";//店铺新增或修改的通知频道（消息为店铺id），各节点据此更新进程内索引
     public static final String USER_SIGN_KEY = "sign:";
 }
@@ -10,4 +10,5 @@ import java.time.LocalDateTime;
 public class RedisData {
     private LocalDateTime expireTime;
     private Object data;
+    private Long rebuildMillis;//上次重建缓存（查库）耗时（毫秒），用于提前刷新的概率计算
 }
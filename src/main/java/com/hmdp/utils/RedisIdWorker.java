@@ -21,15 +21,33 @@ public class RedisIdWorker {
     public long nextId(String keyPrefix){
         //1.生成时间戳
         LocalDateTime now = LocalDateTime.now();
-        long timeStamp = now.toEpochSecond(ZoneOffset.UTC) - BEGIN_TIMESTAMP; // 2022-1-1时间秒数 - 当前时间秒数
+        long timeStamp = timestamp(now);
 
-        //2.生成序列号
-        //2.1获取当前日期，精确到天
-        String date = now.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        //2.2自增长
-        long count = template.opsForValue().increment("icr:" + keyPrefix + ":" + date);
+        //2.生成序列号（按天自增长）
+        long count = template.opsForValue().increment(counterKey(keyPrefix, now));
 
         //3.拼接返回
+        return compose(timeStamp, count);
+    }
+
+    /**
+     * 时间戳部分：当前时间秒数 - 2022-1-1时间秒数
+     */
+    public static long timestamp(LocalDateTime now){
+        return now.toEpochSecond(ZoneOffset.UTC) - BEGIN_TIMESTAMP;
+    }
+
+    /**
+     * 当天的序列号计数器 key（icr:前缀:日期），供在 lua 脚本里自增序列号使用
+     */
+    public static String counterKey(String keyPrefix, LocalDateTime now){
+        return "icr:" + keyPrefix + ":" + now.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+    }
+
+    /**
+     * 拼接 id（lua 的数字是双精度浮点数，64 位 id 只能在 Java 里拼）
+     */
+    public static long compose(long timeStamp, long count){
         return timeStamp << COUNT_BITS | count;
     }
 }
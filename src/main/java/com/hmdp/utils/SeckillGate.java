@@ -0,0 +1,125 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.SeckillVoucher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+
+/**
+ * 秒杀下单的本地前置拦截
+ * 1.售罄标记：脚本返回库存不足时本节点打上标记，并通过 Redis 发布订阅通知其他节点；
+ *   标记期间的请求直接返回，不再生成订单 id、不执行脚本。标记过期后只放一个请求去 Redis 确认，仍售罄就续期
+ * 2.秒杀时间：本地缓存秒杀券的开始、结束时间，时间窗口外的请求不访问 Redis
+ */
+@Slf4j
+@Component
+public class SeckillGate {
+
+    //秒杀券不存在时缓存的占位对象
+    private static final SeckillVoucher NONE = new SeckillVoucher();
+
+    @Resource
+    private StringRedisTemplate template;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final long soldOutTtlMillis;
+    private final long windowTtlMillis;
+    //售罄的券 -> 标记的过期时间
+    private final ConcurrentHashMap<Long, Long> soldOut = new ConcurrentHashMap<>();
+    //秒杀券的时间窗口
+    private final LocalCache windows;
+
+    public SeckillGate(@Value("${hmdp.seckill.sold-out-ttl-millis:10000}") long soldOutTtlMillis,
+                       @Value("${hmdp.seckill.window-ttl-millis:60000}") long windowTtlMillis) {
+        this.soldOutTtlMillis = soldOutTtlMillis;
+        this.windowTtlMillis = windowTtlMillis;
+        this.windows = new LocalCache(1 << 16);
+    }
+
+    @PostConstruct
+    private void init() {
+        //其他节点发现售罄时只在本地打标记，不再广播
+        listenerContainer.addMessageListener((message, pattern) ->
+                        markLocally(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(SECKILL_SOLD_OUT_CHANNEL));
+    }
+
+    /**
+     * 是否已售罄（标记过期时只有一个请求拿到 false 去 Redis 确认，其余的仍按售罄处理）
+     * @param voucherId 优惠券id
+     */
+    public boolean isSoldOut(Long voucherId) {
+        Long until = soldOut.get(voucherId);
+        if (until == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now < until) {
+            return true;
+        }
+        //抢到续期的请求去 Redis 确认
+        return !soldOut.replace(voucherId, until, now + soldOutTtlMillis);
+    }
+
+    /**
+     * 标记售罄，本节点新打上标记时广播给其他节点
+     * @param voucherId 优惠券id
+     */
+    public void markSoldOut(Long voucherId) {
+        if (markLocally(voucherId)) {
+            try {
+                template.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, voucherId.toString());
+            } catch (Exception e) {
+                //广播失败不影响本节点，其他节点各自发现售罄
+                log.warn("广播售罄消息失败，voucherId={}", voucherId, e);
+            }
+        }
+    }
+
+    /**
+     * 确认还有库存（去 Redis 确认的请求下单成功或重复下单时调用），清除标记
+     * @param voucherId 优惠券id
+     */
+    public void markAvailable(Long voucherId) {
+        soldOut.remove(voucherId);
+    }
+
+    /**
+     * 本地打上售罄标记
+     * @return 是否是新打上的（原来没有标记）
+     */
+    boolean markLocally(Long voucherId) {
+        return soldOut.put(voucherId, System.currentTimeMillis() + soldOutTtlMillis) == null;
+    }
+
+    /**
+     * 查询秒杀券的时间窗口（本地缓存）
+     * @param voucherId 优惠券id
+     * @param loader 查库（只需要开始、结束时间）
+     * @return 秒杀券，不存在返回 null
+     */
+    public SeckillVoucher window(Long voucherId, Function<Long, SeckillVoucher> loader) {
+        String key = voucherId.toString();
+        SeckillVoucher voucher = (SeckillVoucher) windows.get(key);
+        if (voucher == null) {
+            voucher = loader.apply(voucherId);
+            if (voucher == null) {
+                voucher = NONE;
+            }
+            windows.put(key, voucher, 1, windowTtlMillis);
+        }
+        return voucher == NONE ? null : voucher;
+    }
+}
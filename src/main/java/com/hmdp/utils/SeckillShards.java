@@ -0,0 +1,113 @@
+package com.hmdp.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 秒杀库存分片
+ * 一张秒杀券的库存平均拆到 K 个分片，每个分片的库存、已下单用户集合、订单 stream 用同一个 hash tag {分片号}，
+ * 集群模式下落在同一个槽，一次下单只在一个分片上执行脚本，吞吐随分片所在的节点数扩展。
+ * 用户按 id 哈希固定到一个主分片（一人一单只需查主分片），主分片卖完时再到其他分片扣减。
+ * 分片数为 0 时不分片，沿用 seckill:stock:{id} 和 stream.orders（有秒杀进行中时不能修改分片数）
+ */
+@Component
+public class SeckillShards {
+
+    private final int shards;
+
+    public SeckillShards(@Value("${hmdp.seckill.stock-shards:0}") int shards) {
+        this.shards = Math.max(0, shards);
+    }
+
+    public boolean isEnabled() {
+        return shards > 0;
+    }
+
+    /**
+     * @return 分片数
+     */
+    public int count() {
+        return shards;
+    }
+
+    /**
+     * 用户的主分片
+     * @param userId 用户id
+     * @return 分片号
+     */
+    public int home(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) shards);
+    }
+
+    public String stockKey(Long voucherId, int shard) {
+        return SECKILL_STOCK_KEY + tag(shard) + voucherId;
+    }
+
+    public String orderKey(Long voucherId, int shard) {
+        return SECKILL_ORDER_KEY + tag(shard) + voucherId;
+    }
+
+    public String streamKey(int shard) {
+        return SECKILL_ORDER_STREAM + ":{" + shard + "}";
+    }
+
+    /**
+     * 分片的订单id计数器前缀（icr:order:{分片号}:日期）
+     */
+    public String idKeyPrefix(int shard) {
+        return "order:{" + shard + "}";
+    }
+
+    /**
+     * 一张券的所有库存 key（不分片时只有一个）
+     */
+    public List<String> stockKeys(Long voucherId) {
+        if (!isEnabled()) {
+            return Collections.singletonList(SECKILL_STOCK_KEY + voucherId);
+        }
+        List<String> keys = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            keys.add(stockKey(voucherId, i));
+        }
+        return keys;
+    }
+
+    /**
+     * 所有订单 stream（不分片时只有 stream.orders）
+     */
+    public List<String> streams() {
+        if (!isEnabled()) {
+            return Collections.singletonList(SECKILL_ORDER_STREAM);
+        }
+        List<String> streams = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            streams.add(streamKey(i));
+        }
+        return streams;
+    }
+
+    /**
+     * 把库存平均拆到各分片，余数给前面的分片
+     * @param stock 总库存
+     * @param shards 分片数
+     * @return 各分片的库存
+     */
+    public static int[] split(int stock, int shards) {
+        int[] parts = new int[shards];
+        for (int i = 0; i < shards; i++) {
+            parts[i] = stock / shards + (i < stock % shards ? 1 : 0);
+        }
+        return parts;
+    }
+
+    private static String tag(int shard) {
+        return "{" + shard + "}:";
+    }
+}
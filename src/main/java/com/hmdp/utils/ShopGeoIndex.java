@@ -0,0 +1,239 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内店铺空间索引（按店铺类型分组的经纬度网格）
+ * 每个网格的店铺存成基本类型数组（id、经度、纬度），写入时整桶复制替换（写少读多），
+ * 读不加锁；附近店铺查询只遍历半径覆盖的网格，不走网络
+ */
+public class ShopGeoIndex {
+
+    //网格边长（度）
+    private final double cellDegrees;
+    //店铺类型 -> (网格编号 -> 网格内的店铺)
+    private final Map<Long, Map<Long, Bucket>> grids = new ConcurrentHashMap<>();
+    //店铺id -> 所在位置（用于移动或修改类型时从旧网格删除）
+    private final Map<Long, Location> locations = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    /**
+     * @param cellMeters 网格边长（米），一般取常用查询半径的 1/10 左右
+     */
+    public ShopGeoIndex(double cellMeters) {
+        this.cellDegrees = GeoHash.latDegrees(cellMeters);
+    }
+
+    /**
+     * 添加或移动店铺
+     * @param id 店铺id
+     * @param typeId 店铺类型
+     * @param x 经度
+     * @param y 纬度
+     */
+    public synchronized void put(long id, long typeId, double x, double y) {
+        remove(id);
+        long cell = cellOf(x, y);
+        grids.computeIfAbsent(typeId, t -> new ConcurrentHashMap<>())
+                .compute(cell, (c, bucket) -> bucket == null ? Bucket.of(id, x, y) : bucket.with(id, x, y));
+        locations.put(id, new Location(typeId, cell));
+    }
+
+    /**
+     * 删除店铺
+     * @param id 店铺id
+     */
+    public synchronized void remove(long id) {
+        Location old = locations.remove(id);
+        if (old == null) {
+            return;
+        }
+        Map<Long, Bucket> grid = grids.get(old.typeId);
+        if (grid != null) {
+            grid.computeIfPresent(old.cell, (c, bucket) -> bucket.without(id));
+        }
+    }
+
+    /**
+     * 半径内距离最近的 limit 个店铺
+     * @param typeId 店铺类型
+     * @param x 中心经度
+     * @param y 中心纬度
+     * @param radius 半径（米）
+     * @param limit 最多返回条数
+     * @return 距离升序的结果
+     */
+    public List<GeoSearcher.Hit> nearest(long typeId, double x, double y, double radius, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        //大顶堆，只保留最近的 limit 个
+        PriorityQueue<GeoSearcher.Hit> heap = new PriorityQueue<>(GeoSearcher.ORDER.reversed());
+        scan(typeId, x, y, radius, (id, distance) -> {
+            if (distance > radius) {
+                return;
+            }
+            if (heap.size() < limit) {
+                heap.add(new GeoSearcher.Hit(id, distance));
+            } else if (distance < heap.peek().getDistance()) {
+                heap.poll();
+                heap.add(new GeoSearcher.Hit(id, distance));
+            }
+        });
+        List<GeoSearcher.Hit> hits = new ArrayList<>(heap);
+        hits.sort(GeoSearcher.ORDER);
+        return hits;
+    }
+
+    /**
+     * 环形区域内的店铺
+     * @param typeId 店铺类型
+     * @param x 中心经度
+     * @param y 中心纬度
+     * @param innerRadius 内半径（米，含）
+     * @param outerRadius 外半径（米，不含）
+     * @return 距离升序的结果
+     */
+    public List<GeoSearcher.Hit> searchRing(long typeId, double x, double y, double innerRadius, double outerRadius) {
+        List<GeoSearcher.Hit> hits = new ArrayList<>();
+        scan(typeId, x, y, outerRadius, (id, distance) -> {
+            if (distance >= innerRadius && distance < outerRadius) {
+                hits.add(new GeoSearcher.Hit(id, distance));
+            }
+        });
+        hits.sort(GeoSearcher.ORDER);
+        return hits;
+    }
+
+    /**
+     * 全量加载完成，开始提供查询
+     */
+    public void markReady() {
+        ready = true;
+    }
+
+    /**
+     * 是否已加载完成（未完成时调用方应使用 Redis GEO 查询）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 索引中的店铺数
+     */
+    public int size() {
+        return locations.size();
+    }
+
+    //遍历半径外接矩形覆盖的网格，计算每个店铺到中心的距离
+    private void scan(long typeId, double x, double y, double radius, HitConsumer consumer) {
+        Map<Long, Bucket> grid = grids.get(typeId);
+        if (grid == null) {
+            return;
+        }
+        double dLat = GeoHash.latDegrees(radius);
+        double dLon = GeoHash.lonDegrees(radius, y);
+        long latFrom = (long) Math.floor((y - dLat) / cellDegrees);
+        long latTo = (long) Math.floor((y + dLat) / cellDegrees);
+        long lonFrom = (long) Math.floor((x - dLon) / cellDegrees);
+        long lonTo = (long) Math.floor((x + dLon) / cellDegrees);
+        for (long i = latFrom; i <= latTo; i++) {
+            for (long j = lonFrom; j <= lonTo; j++) {
+                Bucket bucket = grid.get(cellKey(i, j));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int k = 0; k < bucket.ids.length; k++) {
+                    consumer.accept(bucket.ids[k], GeoHash.distance(x, y, bucket.xs[k], bucket.ys[k]));
+                }
+            }
+        }
+    }
+
+    private long cellOf(double x, double y) {
+        return cellKey((long) Math.floor(y / cellDegrees), (long) Math.floor(x / cellDegrees));
+    }
+
+    private static long cellKey(long latIdx, long lonIdx) {
+        return (latIdx << 32) | (lonIdx & 0xFFFFFFFFL);
+    }
+
+    @FunctionalInterface
+    private interface HitConsumer {
+        void accept(long id, double distance);
+    }
+
+    //店铺所在的类型和网格
+    private static class Location {
+        final long typeId;
+        final long cell;
+
+        Location(long typeId, long cell) {
+            this.typeId = typeId;
+            this.cell = cell;
+        }
+    }
+
+    //一个网格内的店铺（不可变，修改时复制一份新的）
+    private static class Bucket {
+        final long[] ids;
+        final double[] xs;
+        final double[] ys;
+
+        Bucket(long[] ids, double[] xs, double[] ys) {
+            this.ids = ids;
+            this.xs = xs;
+            this.ys = ys;
+        }
+
+        static Bucket of(long id, double x, double y) {
+            return new Bucket(new long[]{id}, new double[]{x}, new double[]{y});
+        }
+
+        Bucket with(long id, double x, double y) {
+            int n = ids.length;
+            long[] newIds = Arrays.copyOf(ids, n + 1);
+            double[] newXs = Arrays.copyOf(xs, n + 1);
+            double[] newYs = Arrays.copyOf(ys, n + 1);
+            newIds[n] = id;
+            newXs[n] = x;
+            newYs[n] = y;
+            return new Bucket(newIds, newXs, newYs);
+        }
+
+        //返回 null 时网格被移除
+        Bucket without(long id) {
+            int idx = -1;
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    idx = i;
+                    break;
+                }
+            }
+            if (idx < 0) {
+                return this;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+            int n = ids.length - 1;
+            long[] newIds = new long[n];
+            double[] newXs = new double[n];
+            double[] newYs = new double[n];
+            System.arraycopy(ids, 0, newIds, 0, idx);
+            System.arraycopy(ids, idx + 1, newIds, idx, n - idx);
+            System.arraycopy(xs, 0, newXs, 0, idx);
+            System.arraycopy(xs, idx + 1, newXs, idx, n - idx);
+            System.arraycopy(ys, 0, newYs, 0, idx);
+            System.arraycopy(ys, idx + 1, newYs, idx, n - idx);
+            return new Bucket(newIds, newXs, newYs);
+        }
+    }
+}
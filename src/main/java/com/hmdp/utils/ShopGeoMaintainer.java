@@ -0,0 +1,167 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 店铺 GEO 索引（shop:geo:{typeId}）维护
+ * 全量：按 id 游标分页读取 tb_shop（只查坐标相关的列），写入临时 key 后 RENAME 原子替换，查询不会看到半成品；
+ * 增量：店铺新增、移动、修改类型时 GEOADD / ZREM；
+ * 定时对账：定期全量重建一次，修正增量过程中遗漏的变更
+ */
+@Slf4j
+@Component
+public class ShopGeoMaintainer {
+
+    @Resource
+    private StringRedisTemplate template;
+    @Resource
+    private ShopMapper shopMapper;
+
+    /**
+     * 定时对账（启动后先执行一次，完成首次加载），多个节点只有抢到锁的一个执行
+     */
+    @Scheduled(initialDelayString = "${hmdp.geo.reconcile-initial-delay-millis:10000}",
+            fixedDelayString = "${hmdp.geo.reconcile-interval-millis:3600000}")
+    public void reconcile() {
+        try {
+            rebuildAll();
+        } catch (Exception e) {
+            log.error("店铺 GEO 索引对账失败", e);
+        }
+    }
+
+    /**
+     * 全量重建所有类型的 GEO 索引
+     * @return 是否执行了重建（其他节点正在重建时返回 false）
+     */
+    public boolean rebuildAll() {
+        SimpleRedisLock lock = new SimpleRedisLock(LOCK_SHOP_GEO_NAME, template);
+        if (!lock.tryLock(LOCK_SHOP_GEO_TTL)) {
+            return false;
+        }
+        try {
+            //记录开始时间，重建期间发生的变更在替换后补上
+            LocalDateTime start = LocalDateTime.now();
+            String tmpSuffix = ":tmp:" + UUID.fastUUID().toString(true);
+            Set<Long> typeIds = new HashSet<>();
+            //1.分页写入临时 key
+            long count = scanShops(new QueryWrapper<>(), page -> {
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    for (Shop shop : page) {
+                        if (shop.getX() == null || shop.getY() == null || shop.getTypeId() == null) {
+                            continue;
+                        }
+                        String tmpKey = SHOP_GEO_KEY + shop.getTypeId() + tmpSuffix;
+                        conn.geoAdd(tmpKey, new Point(shop.getX(), shop.getY()), shop.getId().toString());
+                        if (typeIds.add(shop.getTypeId())) {
+                            //临时 key 设置过期时间，重建中途失败也不会留下垃圾
+                            conn.expire(tmpKey, LOCK_SHOP_GEO_TTL);
+                        }
+                    }
+                    return null;
+                });
+            });
+            //2.原子替换正式 key，并删除已经没有店铺的类型
+            Set<String> oldKeys = scanGeoKeys();
+            template.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Long typeId : typeIds) {
+                    String key = SHOP_GEO_KEY + typeId;
+                    conn.rename(key + tmpSuffix, key);
+                    conn.persist(key);
+                    oldKeys.remove(key);
+                }
+                for (String key : oldKeys) {
+                    conn.del(key);
+                }
+                return null;
+            });
+            //3.补上重建期间变更的店铺（多减几秒，覆盖事务提交与读取之间的时间差）
+            scanShops(new QueryWrapper<Shop>().ge("update_time", start.minusSeconds(SHOP_GEO_CATCH_UP_SECONDS)),
+                    page -> page.forEach(shop -> applyShop(shop.getId(), shop, typeIds)));
+            log.info("店铺 GEO 索引重建完成，共 {} 家店铺，{} 个类型", count, typeIds.size());
+            return true;
+        } finally {
+            lock.unLock();
+        }
+    }
+
+    /**
+     * 增量更新一家店铺（新增、移动、修改类型后调用）
+     * @param id 店铺id
+     * @param oldTypeId 修改前的类型（新增时为 null）
+     */
+    public void apply(Long id, Long oldTypeId) {
+        Shop shop = shopMapper.selectOne(new QueryWrapper<Shop>().select("id", "type_id", "x", "y").eq("id", id));
+        applyShop(id, shop, oldTypeId == null ? null : Collections.singleton(oldTypeId));
+    }
+
+    //店铺从其他类型的集合中删除，再写入当前类型的集合（店铺已删除或没有坐标时只删除）
+    private void applyShop(Long id, Shop shop, Set<Long> otherTypeIds) {
+        String member = id.toString();
+        template.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            Long typeId = shop == null ? null : shop.getTypeId();
+            if (otherTypeIds != null) {
+                for (Long other : otherTypeIds) {
+                    if (!other.equals(typeId)) {
+                        conn.zRem(SHOP_GEO_KEY + other, member);
+                    }
+                }
+            }
+            if (shop != null && typeId != null && shop.getX() != null && shop.getY() != null) {
+                conn.geoAdd(SHOP_GEO_KEY + typeId, new Point(shop.getX(), shop.getY()), member);
+            } else if (typeId != null) {
+                conn.zRem(SHOP_GEO_KEY + typeId, member);
+            }
+            return null;
+        });
+    }
+
+    //按 id 游标分页读取店铺的坐标相关列
+    private long scanShops(QueryWrapper<Shop> wrapper, Consumer<List<Shop>> pageConsumer) {
+        return IdCursorScanner.scan(shopMapper, wrapper.select("id", "type_id", "x", "y"), Shop::getId, pageConsumer);
+    }
+
+    //当前所有正式的 GEO key（shop:geo:{typeId}）
+    private Set<String> scanGeoKeys() {
+        Set<String> keys = new HashSet<>();
+        template.execute((RedisCallback<Object>) connection -> {
+            ScanOptions options = ScanOptions.scanOptions().match(SHOP_GEO_KEY + "*").count(1000).build();
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                while (cursor.hasNext()) {
+                    String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                    if (key.substring(SHOP_GEO_KEY.length()).matches("\\d+")) {
+                        keys.add(key);
+                    }
+                }
+            }
+            return null;
+        });
+        return keys;
+    }
+}
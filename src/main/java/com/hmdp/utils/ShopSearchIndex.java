@@ -0,0 +1,267 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内店铺搜索索引（倒排索引）
+ * 店铺名称、商圈、地址按单字和相邻两字切分（适合不分词的中文），每个词对应一个有序的店铺 id 数组；
+ * 查询时取查询串的各个词，从最短的 id 数组开始求交集，再用原文确认包含整个查询串，
+ * 查询耗时只与命中的店铺数有关，与表的大小无关；
+ * 启动全量加载用 bulkPut 只记录原文，markReady 时一次性建好所有 id 数组，之后的增量修改才逐个复制数组
+ */
+public class ShopSearchIndex {
+
+    //词 -> 有序店铺id（不可变，修改时复制一份新的）
+    private final Map<String, long[]> postings = new ConcurrentHashMap<>();
+    //店铺id -> 索引的原文
+    private final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    /**
+     * 添加或更新店铺
+     * @param id 店铺id
+     * @param name 名称
+     * @param area 商圈
+     * @param address 地址
+     */
+    public synchronized void put(long id, String name, String area, String address) {
+        remove(id);
+        Doc doc = new Doc(normalize(name), normalize(area), normalize(address));
+        docs.put(id, doc);
+        for (String term : terms(doc.name + "\n" + doc.area + "\n" + doc.address)) {
+            postings.compute(term, (t, ids) -> insert(ids, id));
+        }
+    }
+
+    /**
+     * 全量加载时添加店铺：只记录原文，id 数组在 markReady 时统一构建
+     * （逐个 put 每次都要复制涉及的整个 id 数组，全量加载会是 O(N²)）
+     * @param id 店铺id
+     * @param name 名称
+     * @param area 商圈
+     * @param address 地址
+     */
+    public synchronized void bulkPut(long id, String name, String area, String address) {
+        docs.put(id, new Doc(normalize(name), normalize(area), normalize(address)));
+    }
+
+    /**
+     * 删除店铺
+     * @param id 店铺id
+     */
+    public synchronized void remove(long id) {
+        Doc old = docs.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String term : terms(old.name + "\n" + old.area + "\n" + old.address)) {
+            postings.computeIfPresent(term, (t, ids) -> delete(ids, id));
+        }
+    }
+
+    /**
+     * 搜索：名称以关键字开头的排最前，其次名称包含关键字的，最后是商圈或地址包含的，同组按 id 升序
+     * @param keyword 关键字
+     * @param offset 跳过条数
+     * @param size 返回条数
+     * @return 店铺id
+     */
+    public List<Long> search(String keyword, int offset, int size) {
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+        //1.取查询串的词（两个字以上只用两字词，交集更小），从最短的 id 数组开始求交集
+        Set<String> terms = query.length() == 1 ? terms(query) : bigrams(query);
+        long[][] lists = new long[terms.size()][];
+        int i = 0;
+        for (String term : terms) {
+            long[] ids = postings.get(term);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            lists[i++] = ids;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(a -> a.length));
+        long[] candidates = lists[0];
+        for (int k = 1; k < lists.length && candidates.length > 0; k++) {
+            candidates = intersect(candidates, lists[k]);
+        }
+        //2.用原文确认包含整个查询串，并按匹配位置分组
+        List<Long> prefix = new ArrayList<>();
+        List<Long> inName = new ArrayList<>();
+        List<Long> other = new ArrayList<>();
+        for (long id : candidates) {
+            Doc doc = docs.get(id);
+            if (doc == null) {
+                continue;
+            }
+            if (doc.name.startsWith(query)) {
+                prefix.add(id);
+            } else if (doc.name.contains(query)) {
+                inName.add(id);
+            } else if (doc.area.contains(query) || doc.address.contains(query)) {
+                other.add(id);
+            }
+        }
+        prefix.addAll(inName);
+        prefix.addAll(other);
+        if (offset >= prefix.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(prefix.subList(offset, Math.min(prefix.size(), offset + size)));
+    }
+
+    /**
+     * 全量加载完成，按所有店铺原文一次性构建 id 数组（追加后排序），开始提供查询
+     */
+    public synchronized void markReady() {
+        Map<String, LongBuffer> buffers = new HashMap<>();
+        docs.forEach((id, doc) -> {
+            for (String term : terms(doc.name + "\n" + doc.area + "\n" + doc.address)) {
+                buffers.computeIfAbsent(term, t -> new LongBuffer()).add(id);
+            }
+        });
+        postings.clear();
+        buffers.forEach((term, buffer) -> postings.put(term, buffer.toSortedArray()));
+        ready = true;
+    }
+
+    /**
+     * 是否已加载完成（未完成时调用方应直接查库）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 索引中的店铺数
+     */
+    public int size() {
+        return docs.size();
+    }
+
+    //统一小写、去掉首尾空白
+    private static String normalize(String s) {
+        return StrUtil.isBlank(s) ? "" : s.trim().toLowerCase();
+    }
+
+    //单字和相邻两字（不跨字段）
+    private static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                terms.add(String.valueOf(c));
+            }
+        }
+        terms.addAll(bigrams(text));
+        return terms;
+    }
+
+    //相邻两字（含空白的不要）
+    private static Set<String> bigrams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < text.length(); i++) {
+            char a = text.charAt(i);
+            char b = text.charAt(i + 1);
+            if (!Character.isWhitespace(a) && !Character.isWhitespace(b)) {
+                grams.add(new String(new char[]{a, b}));
+            }
+        }
+        return grams;
+    }
+
+    //有序数组求交集
+    private static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    //有序插入（复制新数组）
+    private static long[] insert(long[] ids, long id) {
+        if (ids == null) {
+            return new long[]{id};
+        }
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) {
+            return ids;
+        }
+        pos = -pos - 1;
+        long[] out = new long[ids.length + 1];
+        System.arraycopy(ids, 0, out, 0, pos);
+        out[pos] = id;
+        System.arraycopy(ids, pos, out, pos + 1, ids.length - pos);
+        return out;
+    }
+
+    //有序删除（复制新数组），删空返回 null 移除这个词
+    private static long[] delete(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] out = new long[ids.length - 1];
+        System.arraycopy(ids, 0, out, 0, pos);
+        System.arraycopy(ids, pos + 1, out, pos, ids.length - pos - 1);
+        return out;
+    }
+
+    //构建 id 数组用的可增长缓冲区
+    private static class LongBuffer {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        //每个店铺只追加一次，排序即可，不需要去重
+        long[] toSortedArray() {
+            long[] out = Arrays.copyOf(values, size);
+            Arrays.sort(out);
+            return out;
+        }
+    }
+
+    //索引的原文（已统一小写）
+    private static class Doc {
+        final String name;
+        final String area;
+        final String address;
+
+        Doc(String name, String area, String address) {
+            this.name = name;
+            this.area = area;
+            this.address = address;
+        }
+    }
+}
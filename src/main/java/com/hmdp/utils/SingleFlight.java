@@ -0,0 +1,60 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 进程内请求合并（single-flight）
+ * 同一个 key 同一时刻只有一个线程（leader）真正执行加载逻辑，
+ * 其他并发线程等待并共享 leader 的结果，加载结束后立即移除，不做缓存
+ */
+public class SingleFlight {
+
+    //正在执行中的调用（key -> 结果）
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行加载逻辑，同一 key 的并发调用合并为一次
+     * @param key 合并的 key
+     * @param loader 加载逻辑
+     * @param <T> 返回类型
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            //已有 leader 在加载，等待它的结果
+            try {
+                return (T) inFlight.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw e;
+            }
+        }
+        //当前线程是 leader
+        try {
+            T value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * 当前正在执行中的 key 数量
+     */
+    public int inFlightCount() {
+        return calls.size();
+    }
+}
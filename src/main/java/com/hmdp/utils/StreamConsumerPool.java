@@ -0,0 +1,308 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis Stream 消费者组的多线程消费
+ * 每个线程是组里一个独立的消费者（名称：主机名:进程号-序号），多个节点、多个线程并行消费同一个 Stream，一条消息只投递给一个消费者；
+ * 一批消息处理成功后一次 XACK 确认；整批失败时逐条重试，成功的确认，失败的留在自己的 pending-list 里重试，
+ * 投递次数达到 maxDeliveries 仍失败的转入死信队列（stream:dlq）并确认，坏消息不会一直卡住整批和消费线程；
+ * 消费者宕机后留下的 pending 消息空闲超过 claimIdleMillis 后，由其他消费者用 XCLAIM 认领（带 min-idle-time，多个消费者同时认领只有一个成功）
+ */
+@Slf4j
+public class StreamConsumerPool {
+
+    /**
+     * 批量处理消息，抛出异常表示这一批处理失败（不确认）
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void handle(List<MapRecord<String, Object, Object>> records);
+    }
+
+    //处理 pending-list 失败后的重试间隔
+    private static final long RETRY_DELAY_MILLIS = 20000;
+
+    private final StringRedisTemplate template;
+    private final String stream;
+    private final String group;
+    private final int workers;
+    private final int batchSize;
+    private final long claimIdleMillis;
+    private final int maxDeliveries;
+    private final Handler handler;
+    private final String consumerPrefix;
+    private final ExecutorService executor;
+    private volatile boolean running;
+
+    /**
+     * @param template redis
+     * @param stream Stream 的 key
+     * @param group 消费者组
+     * @param consumerName 本节点的消费者名前缀，为空时用「主机名:进程号」
+     * @param workers 消费线程数
+     * @param batchSize 每次读取的消息数
+     * @param claimIdleMillis 其他消费者的 pending 消息空闲超过这么久就认领过来
+     * @param maxDeliveries 单条消息最多投递次数，仍处理失败的转入死信队列
+     * @param handler 消息处理
+     */
+    public StreamConsumerPool(StringRedisTemplate template, String stream, String group, String consumerName,
+                              int workers, int batchSize, long claimIdleMillis, int maxDeliveries, Handler handler) {
+        this.template = template;
+        this.stream = stream;
+        this.group = group;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.claimIdleMillis = claimIdleMillis;
+        this.maxDeliveries = maxDeliveries;
+        this.handler = handler;
+        this.consumerPrefix = consumerName == null || consumerName.isEmpty() ? defaultConsumerName() : consumerName;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, stream + "-consumer-" + threadNo.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 创建消费者组（不存在时），启动消费线程
+     */
+    public void start() {
+        createGroup();
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            executor.submit(new Worker(Consumer.from(group, consumerPrefix + "-" + i)));
+        }
+    }
+
+    /**
+     * 停止消费，并删除没有 pending 消息的消费者（有 pending 的留着，由其他节点认领）
+     */
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (int i = 0; i < workers; i++) {
+            Consumer consumer = Consumer.from(group, consumerPrefix + "-" + i);
+            try {
+                if (template.opsForStream().pending(stream, consumer, Range.unbounded(), 1).isEmpty()) {
+                    template.opsForStream().deleteConsumer(stream, consumer);
+                }
+            } catch (Exception e) {
+                log.warn("删除消费者失败，stream={}, consumer={}", stream, consumer.getName(), e);
+            }
+        }
+    }
+
+    //XGROUP CREATE stream group 0 MKSTREAM，组已存在时忽略
+    private void createGroup() {
+        byte[] key = stream.getBytes(StandardCharsets.UTF_8);
+        try {
+            template.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(key, group, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")) {
+                log.error("创建消费者组失败，stream={}, group={}", stream, group, e);
+            }
+        }
+    }
+
+    private static String defaultConsumerName() {
+        //格式：进程号@主机名
+        String[] name = ManagementFactory.getRuntimeMXBean().getName().split("@", 2);
+        return name.length == 2 ? name[1] + ":" + name[0] : name[0];
+    }
+
+    //一个消费者
+    private class Worker implements Runnable {
+        private final Consumer consumer;
+        private long nextClaimAt;
+
+        Worker(Consumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            //先处理自己 pending-list 中的消息
+            handlePendingList();
+            while (running) {
+                try {
+                    //1.定期认领其他消费者空闲太久的消息
+                    if (System.currentTimeMillis() >= nextClaimAt) {
+                        nextClaimAt = System.currentTimeMillis() + claimIdleMillis;
+                        if (claim() > 0) {
+                            handlePendingList();
+                        }
+                    }
+                    //2.批量获取消息 XREADGROUP GROUP g c COUNT n BLOCK 2000 STREAMS stream >
+                    List<MapRecord<String, Object, Object>> list = template.opsForStream().read(
+                            consumer,
+                            StreamReadOptions.empty().count(batchSize).block(Duration.ofSeconds(2)),
+                            StreamOffset.create(stream, ReadOffset.lastConsumed())
+                    );
+                    if (list == null || list.isEmpty()) {
+                        continue;
+                    }
+                    //3.处理并确认
+                    process(list);
+                } catch (Exception e) {
+                    if (!running) {
+                        break;
+                    }
+                    log.error("处理消息异常，stream={}, consumer={}", stream, consumer.getName(), e);
+                    handlePendingList();
+                }
+            }
+        }
+
+        //处理自己 pending-list 中的消息 XREADGROUP GROUP g c COUNT n STREAMS stream 0
+        private void handlePendingList() {
+            while (running) {
+                try {
+                    List<MapRecord<String, Object, Object>> list = template.opsForStream().read(
+                            consumer,
+                            StreamReadOptions.empty().count(batchSize),
+                            StreamOffset.create(stream, ReadOffset.from("0"))
+                    );
+                    if (list == null || list.isEmpty()) {
+                        //pending-list 没有消息了
+                        break;
+                    }
+                    process(list);
+                } catch (Exception e) {
+                    log.error("处理pending-list消息异常，stream={}, consumer={}", stream, consumer.getName(), e);
+                    try {
+                        Thread.sleep(RETRY_DELAY_MILLIS);
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+
+        //先整批处理，成功后一次 XACK 确认整批 XACK stream group id1 id2 ...；失败时逐条处理
+        private void process(List<MapRecord<String, Object, Object>> list) {
+            try {
+                handler.handle(list);
+                acknowledge(list);
+                return;
+            } catch (Exception e) {
+                if (list.size() == 1) {
+                    log.error("处理消息失败，stream={}, id={}", stream, list.get(0).getId(), e);
+                } else {
+                    log.warn("整批处理失败，逐条重试，stream={}, size={}", stream, list.size(), e);
+                }
+            }
+            List<MapRecord<String, Object, Object>> failed = list;
+            if (list.size() > 1) {
+                failed = new ArrayList<>();
+                for (MapRecord<String, Object, Object> record : list) {
+                    try {
+                        handler.handle(Collections.singletonList(record));
+                        acknowledge(Collections.singletonList(record));
+                    } catch (Exception e) {
+                        log.error("处理消息失败，stream={}, id={}", stream, record.getId(), e);
+                        failed.add(record);
+                    }
+                }
+            }
+            if (failed.isEmpty()) {
+                return;
+            }
+            //投递次数用完的转入死信队列，其余留在 pending-list 里稍后重试
+            Map<RecordId, Long> deliveries = deliveryCounts(failed);
+            int retry = 0;
+            for (MapRecord<String, Object, Object> record : failed) {
+                if (deliveries.getOrDefault(record.getId(), 0L) >= maxDeliveries) {
+                    deadLetter(record);
+                } else {
+                    retry++;
+                }
+            }
+            if (retry > 0) {
+                throw new IllegalStateException("有 " + retry + " 条消息处理失败，留在pending-list中重试");
+            }
+        }
+
+        private void acknowledge(List<MapRecord<String, Object, Object>> list) {
+            RecordId[] ids = list.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+            template.opsForStream().acknowledge(stream, group, ids);
+        }
+
+        //失败消息已被投递的次数（XPENDING stream group first last count consumer）
+        private Map<RecordId, Long> deliveryCounts(List<MapRecord<String, Object, Object>> failed) {
+            Range<String> range = Range.closed(failed.get(0).getId().getValue(),
+                    failed.get(failed.size() - 1).getId().getValue());
+            PendingMessages pending = template.opsForStream().pending(stream, consumer, range, Long.MAX_VALUE);
+            Map<RecordId, Long> counts = new HashMap<>();
+            for (PendingMessage message : pending) {
+                counts.put(message.getId(), message.getTotalDeliveryCount());
+            }
+            return counts;
+        }
+
+        //转入死信队列（保留原消息内容和id）后确认，需要时人工处理或重新投递
+        private void deadLetter(MapRecord<String, Object, Object> record) {
+            Map<String, String> fields = new LinkedHashMap<>();
+            record.getValue().forEach((k, v) -> fields.put(k.toString(), v.toString()));
+            fields.put("sourceId", record.getId().getValue());
+            template.opsForStream().add(StreamRecords.newRecord().in(stream + ":dlq").ofMap(fields));
+            acknowledge(Collections.singletonList(record));
+            log.error("消息投递 {} 次仍处理失败，已转入死信队列，stream={}, id={}", maxDeliveries, stream, record.getId());
+        }
+
+        //XPENDING 找出其他消费者空闲超过 claimIdleMillis 的消息，XCLAIM 到自己名下，返回认领到的条数
+        private int claim() {
+            PendingMessages pending = template.opsForStream().pending(stream, group, Range.unbounded(), batchSize);
+            List<RecordId> ids = new ArrayList<>();
+            for (PendingMessage message : pending) {
+                if (!consumer.getName().equals(message.getConsumerName())
+                        && message.getElapsedTimeSinceLastDelivery().toMillis() >= claimIdleMillis) {
+                    ids.add(message.getId());
+                }
+            }
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            byte[] key = stream.getBytes(StandardCharsets.UTF_8);
+            //min-idle-time 保证同一条消息只有一个消费者认领成功
+            List<RecordId> claimed = template.execute((RedisCallback<List<RecordId>>) connection ->
+                    connection.streamCommands().xClaimJustId(key, group, consumer.getName(),
+                            RedisStreamCommands.XClaimOptions.minIdleMs(claimIdleMillis).ids(ids)));
+            int count = claimed == null ? 0 : claimed.size();
+            if (count > 0) {
+                log.info("认领空闲消息 {} 条，stream={}, consumer={}", count, stream, consumer.getName());
+            }
+            return count;
+        }
+    }
+}
@@ -5,4 +5,14 @@ public class SystemConstants {
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+    public static final double GEO_SEARCH_RADIUS = 5000;//附近店铺的搜索半径（米）
+    public static final double GEO_RING_WIDTH = 500;//游标分页时第一圈的宽度（米）
+    public static final double GEO_RING_MIN_WIDTH = 50;//游标分页时圈宽的下限（米）
+    public static final int GEO_RING_MAX_ROUNDS = 32;//游标分页时一次请求最多查询的圈数
+    public static final double NEARBY_MAX_RADIUS = 20000;//综合搜索允许的最大半径（米）
+    public static final int NEARBY_MAX_CANDIDATES = 1000;//综合搜索最多参与过滤排序的店铺数（取最近的）
+    public static final int NEARBY_MAX_LIMIT = 50;//综合搜索最多返回条数
+    public static final int SHOP_DETAIL_BLOG_SIZE = 3;//店铺详情页展示的笔记条数（按点赞数取前几条）
+    public static final double NEARBY_SOLD_NORM = 10000;//销量归一化的参考值（取对数后与之相比）
+    public static final int SCAN_BATCH_SIZE = 1000;//按 id 游标分批读取整张表时的每批条数
 }
@@ -7,26 +7,30 @@
 -- 参数列表
 local voucherId = ARGV[1] --优惠券id
 local userId = ARGV[2] --用户id
-local orderId = ARGV[3] --订单id
+local timestamp = ARGV[3] --订单id的时间戳部分
+local counterKey = ARGV[4] --当天的订单id计数器
 
 --Redis对应key
 local stockKey = "seckill:stock:" .. voucherId
 local orderKey = "seckill:order:" .. voucherId
 
 --脚本逻辑
-if (tonumber(redis.call("get", stockKey)) <= 0) then
+if (tonumber(redis.call("get", stockKey) or "0") <= 0) then
     --库存不足
-    return 1
+    return -1
 end
 --判断用户是否下过单
 if (redis.call("sismember", orderKey, userId) == 1) then
     --此用户已下过单
-    return 2
+    return -2
 end
 --扣减库存
 redis.call("incrby", stockKey, -1)
 --下单，将userId存入当前优惠券的set集合
 redis.call("sadd", orderKey, userId)
+--下单成功才分配订单id的序列号（id由时间戳和序列号在Java中拼接）
+local seq = redis.call("incr", counterKey)
 --发送消息到队列中， XADD stream.orders * k1 v1 k2 v2 ...
-redis.call("xadd","stream.orders","*","userId",userId,"voucherId",voucherId,"id",orderId)
-return 0
\ No newline at end of file
+redis.call("xadd","stream.orders","*","userId",userId,"voucherId",voucherId,"ts",timestamp,"seq",seq)
+--返回序列号
+return seq
\ No newline at end of file
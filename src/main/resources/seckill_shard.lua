@@ -0,0 +1,31 @@
+-- 分片库存模式的秒杀下单，所有 key 都在用户的主分片上（同一个 hash tag，集群模式下在同一个槽）
+-- KEYS[1] 主分片库存 KEYS[2] 主分片已下单用户集合 KEYS[3] 主分片订单stream KEYS[4] 主分片当天的订单id计数器
+local stockKey = KEYS[1]
+local orderKey = KEYS[2]
+local streamKey = KEYS[3]
+local counterKey = KEYS[4]
+-- 参数列表
+local voucherId = ARGV[1] --优惠券id
+local userId = ARGV[2] --用户id
+local timestamp = ARGV[3] --订单id的时间戳部分
+local prepaid = ARGV[4] --是否已经从其他分片扣过库存（1/0）
+local shards = tonumber(ARGV[5]) --分片数
+local shard = tonumber(ARGV[6]) --主分片号
+
+--判断用户是否下过单（用户总是落在同一个主分片，所以只需要查主分片）
+if (redis.call("sismember", orderKey, userId) == 1) then
+    return -2
+end
+if (prepaid ~= "1") then
+    if (tonumber(redis.call("get", stockKey) or "0") <= 0) then
+        --主分片库存不足，由调用方到其他分片扣减
+        return -1
+    end
+    redis.call("incrby", stockKey, -1)
+end
+redis.call("sadd", orderKey, userId)
+--下单成功才分配序列号（id由时间戳和序列号在Java中拼接），各分片的计数器各自自增，乘分片数再加分片号保证不重复
+local seq = redis.call("incr", counterKey) * shards + shard
+redis.call("xadd", streamKey, "*", "userId", userId, "voucherId", voucherId, "ts", timestamp, "seq", seq)
+--返回序列号
+return seq
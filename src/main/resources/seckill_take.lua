@@ -0,0 +1,7 @@
+-- 从一个分片扣减一个库存（主分片卖完时向其他分片借）
+-- KEYS[1] 分片库存，扣减成功返回 1，库存不足返回 0
+if (tonumber(redis.call("get", KEYS[1]) or "0") <= 0) then
+    return 0
+end
+redis.call("incrby", KEYS[1], -1)
+return 1
@@ -0,0 +1,104 @@
+package com.hmdp.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.dto.ShopTypeSnapshot;
+import com.hmdp.entity.ShopType;
+import com.hmdp.mapper.ShopTypeMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_VERSION_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ShopTypeServiceImplTest {
+
+    //两个节点共用的 Redis
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    //数据库中的店铺类型
+    private final List<ShopType> types = new ArrayList<>();
+    private StringRedisTemplate template;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(ops.get(anyString())).thenAnswer(inv -> redis.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> redis.put(inv.getArgument(0), inv.getArgument(1))).when(ops).set(anyString(), anyString());
+        when(ops.increment(anyString())).thenAnswer(inv ->
+                Long.valueOf(redis.merge(inv.<String>getArgument(0), "1", (a, b) -> String.valueOf(Long.parseLong(a) + 1))));
+        template = mock(StringRedisTemplate.class);
+        when(template.opsForValue()).thenReturn(ops);
+    }
+
+    private ShopTypeServiceImpl node() {
+        ShopTypeMapper mapper = mock(ShopTypeMapper.class);
+        when(mapper.selectList(any())).thenAnswer(inv -> new ArrayList<>(types));
+        ShopTypeServiceImpl service = new ShopTypeServiceImpl();
+        ReflectionTestUtils.setField(service, "baseMapper", mapper);
+        ReflectionTestUtils.setField(service, "template", template);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        return service;
+    }
+
+    private static ShopType type(long id, String name) {
+        ShopType type = new ShopType();
+        type.setId(id);
+        type.setName(name);
+        return type;
+    }
+
+    @Test
+    void refreshIsPublishedToOtherNodesTest() {
+        types.add(type(1, "美食"));
+        ShopTypeServiceImpl a = node();
+        ShopTypeServiceImpl b = node();
+        //空 Redis：首次加载即发布
+        ShopTypeSnapshot first = a.queryTypeList();
+        assertEquals(1L, first.getVersion());
+        assertNotNull(redis.get(CACHE_SHOP_TYPE_KEY));
+        assertSame(first.getVersion(), b.queryTypeList().getVersion());
+        //版本没变时不重新加载
+        ShopTypeSnapshot loaded = b.queryTypeList();
+        b.checkVersion();
+        assertSame(loaded, b.queryTypeList());
+
+        //a 刷新：发布新内容和版本号，替换本地快照
+        types.add(type(2, "KTV"));
+        ShopTypeSnapshot refreshed = a.refreshTypeList();
+        assertEquals(2L, refreshed.getVersion());
+        assertEquals("2", redis.get(CACHE_SHOP_TYPE_VERSION_KEY));
+        assertSame(refreshed, a.queryTypeList());
+        assertNotEquals(first.getEtag(), refreshed.getEtag());
+
+        //b 检查版本后加载到 a 发布的内容
+        b.checkVersion();
+        ShopTypeSnapshot reloaded = b.queryTypeList();
+        assertEquals(2L, reloaded.getVersion());
+        assertEquals(refreshed.getEtag(), reloaded.getEtag());
+        assertTrue(new String(reloaded.getBody(), StandardCharsets.UTF_8).contains("KTV"));
+    }
+
+    @Test
+    void emptyTypesAreNotPublishedTest() {
+        ShopTypeServiceImpl a = node();
+        ShopTypeSnapshot empty = a.queryTypeList();
+        assertNull(empty.getVersion());
+        assertNull(redis.get(CACHE_SHOP_TYPE_VERSION_KEY));
+        //未发布且 Redis 中也没有版本号：一致，不反复查库
+        a.checkVersion();
+        assertSame(empty, a.queryTypeList());
+    }
+}
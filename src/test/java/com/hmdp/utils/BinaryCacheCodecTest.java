@@ -0,0 +1,50 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCacheCodecTest {
+
+    private final BinaryCacheCodec codec = new BinaryCacheCodec();
+
+    private Shop shop() {
+        return new Shop().setId(1L).setName("103茶餐厅").setTypeId(1L)
+                .setArea("大关").setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192).setY(30.316078)
+                .setAvgPrice(80L).setSold(4215).setComments(3035).setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+    }
+
+    @Test
+    void roundTripTest() {
+        Shop shop = shop();
+        String raw = codec.encode(shop);
+        assertTrue(raw.startsWith(BinaryCacheCodec.PLAIN_TAG));
+        assertTrue(raw.length() < JSONUtil.toJsonStr(shop).length());
+        assertEquals(shop, codec.decode(raw, Shop.class));
+    }
+
+    @Test
+    void logicalRoundTripTest() {
+        LocalDateTime expireTime = LocalDateTime.of(2024, 8, 25, 8, 53, 0);
+        RedisData redisData = RedisData.builder().data(shop()).expireTime(expireTime).build();
+        RedisData decoded = codec.decodeLogical(codec.encodeLogical(redisData), Shop.class);
+        assertEquals(expireTime, decoded.getExpireTime());
+        assertEquals(shop(), decoded.getData());
+    }
+
+    @Test
+    void decodeOldJsonTest() {
+        Shop shop = shop();
+        assertEquals(shop.getName(), codec.decode(JSONUtil.toJsonStr(shop), Shop.class).getName());
+        RedisData redisData = RedisData.builder().data(shop).expireTime(LocalDateTime.now()).build();
+        RedisData decoded = codec.decodeLogical(JSONUtil.toJsonStr(redisData), Shop.class);
+        assertEquals(shop.getId(), ((Shop) decoded.getData()).getId());
+    }
+}
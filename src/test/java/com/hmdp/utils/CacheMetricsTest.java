@@ -0,0 +1,50 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CacheMetrics metrics = new CacheMetrics(registry,
+            new CacheRebuildScheduler(1, 10, CacheRebuildScheduler.RejectPolicy.DISCARD, 10, Collections.emptyMap()));
+
+    private double requests(String result, String level) {
+        return registry.get("cache.requests")
+                .tags("prefix", CACHE_SHOP_KEY, "result", result, "level", level)
+                .counter().count();
+    }
+
+    @Test
+    void countersByPrefixTest() {
+        metrics.localHit(CACHE_SHOP_KEY);
+        metrics.localHit(CACHE_SHOP_KEY);
+        metrics.redisHit(CACHE_SHOP_KEY);
+        metrics.staleServed(CACHE_SHOP_KEY);
+        metrics.miss(CACHE_SHOP_KEY);
+        metrics.lockContention(CACHE_SHOP_KEY);
+        metrics.miss("cache:user:");
+
+        assertEquals(2, requests("hit", "local"));
+        assertEquals(1, requests("hit", "redis"));
+        assertEquals(1, requests("stale", "redis"));
+        assertEquals(1, requests("miss", "db"));
+        assertEquals(1, registry.get("cache.lock.contention").tag("prefix", CACHE_SHOP_KEY).counter().count());
+        assertEquals(1, registry.get("cache.requests").tags("prefix", "cache:user:", "result", "miss").counter().count());
+    }
+
+    @Test
+    void timersAndGaugesTest() {
+        metrics.recordRebuild(CACHE_SHOP_KEY, TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.recordRebuild(CACHE_SHOP_KEY, TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(2, registry.get("cache.rebuild").tag("prefix", CACHE_SHOP_KEY).timer().count());
+        assertEquals(30, registry.get("cache.rebuild").timer().max(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(0, registry.get("cache.rebuild.queue").gauge().value());
+    }
+}
@@ -0,0 +1,39 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoHashTest {
+
+    @Test
+    void redisScoreTest() {
+        //GEOADD Sicily 13.361389 38.115556 "Palermo" 15.087269 37.502669 "Catania" 后的 ZSCORE
+        assertEquals(3479099956230698L, GeoHash.encode(13.361389, 38.115556, GeoHash.MAX_STEP));
+        assertEquals(3479447370796909L, GeoHash.encode(15.087269, 37.502669, GeoHash.MAX_STEP));
+    }
+
+    @Test
+    void decodeAndDistanceTest() {
+        double[] palermo = GeoHash.decode(3479099956230698L);
+        assertEquals(13.361389, palermo[0], 1e-5);
+        assertEquals(38.115556, palermo[1], 1e-5);
+        double[] catania = GeoHash.decode(3479447370796909L);
+        //GEODIST Sicily Palermo Catania -> 166274.1516
+        assertEquals(166274.1516, GeoHash.distance(palermo[0], palermo[1], catania[0], catania[1]), 0.01);
+    }
+
+    @Test
+    void cellScoreRangeTest() {
+        long score = GeoHash.encode(120.149192, 30.316078, GeoHash.MAX_STEP);
+        for (int step = 1; step <= GeoHash.MAX_STEP; step++) {
+            long cell = GeoHash.encode(120.149192, 30.316078, step);
+            assertTrue(score >= GeoHash.scoreMin(cell, step));
+            assertTrue(score < GeoHash.scoreMax(cell, step));
+        }
+        int step = GeoHash.stepForCellMeters(500, 30.3);
+        assertTrue(GeoHash.latCellDegrees(step) * 111000 >= 500);
+        assertTrue(GeoHash.latCellDegrees(step + 1) * 111000 < 500 * 1.1
+                || GeoHash.lonCellDegrees(step + 1) * 111000 * Math.cos(Math.toRadians(30.3)) < 500);
+    }
+}
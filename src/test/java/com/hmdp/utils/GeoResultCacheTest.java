@@ -0,0 +1,81 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoResultCacheTest {
+
+    private static final double X = 120.149192, Y = 30.316078;
+
+    private final List<GeoResultCache.Candidate> shops = new ArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    //暴力实现的 GEOSEARCH
+    private List<GeoResultCache.Candidate> load(double x, double y, double radius, int limit) {
+        loads.incrementAndGet();
+        return search(x, y, radius, limit);
+    }
+
+    private List<GeoResultCache.Candidate> search(double x, double y, double radius, int limit) {
+        return shops.stream()
+                .filter(c -> GeoHash.distance(x, y, c.getX(), c.getY()) <= radius)
+                .sorted(Comparator.comparingDouble(c -> GeoHash.distance(x, y, c.getX(), c.getY())))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> bruteForce(double x, double y, double radius, int limit) {
+        return search(x, y, radius, limit).stream().map(GeoResultCache.Candidate::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void sameCellSharesCandidatesTest() {
+        Random random = new Random(7);
+        for (long i = 1; i <= 3000; i++) {
+            shops.add(new GeoResultCache.Candidate(i, X + (random.nextDouble() - 0.5) * 0.1, Y + (random.nextDouble() - 0.5) * 0.1));
+        }
+        GeoResultCache cache = new GeoResultCache(true, 100, 60000, 20, 1000, 1 << 20);
+        //同一个点反复查询不再加载
+        List<GeoSearcher.Hit> first = cache.nearest(1, X, Y, 5000, 10, this::load);
+        assertEquals(bruteForce(X, Y, 5000, 10), first.stream().map(GeoSearcher.Hit::getId).collect(Collectors.toList()));
+        int loaded = loads.get();
+        assertEquals(first, cache.nearest(1, X, Y, 5000, 10, this::load));
+        assertEquals(loaded, loads.get());
+        //附近的用户各自按真实坐标排序，结果与直接查询一致
+        for (int i = 0; i < 200; i++) {
+            double x = X + (random.nextDouble() - 0.5) * 0.004;
+            double y = Y + (random.nextDouble() - 0.5) * 0.004;
+            int page = random.nextInt(4) + 1;
+            List<GeoSearcher.Hit> hits = cache.nearest(1, x, y, 5000, page * 5, this::load);
+            assertEquals(bruteForce(x, y, 5000, page * 5),
+                    hits.stream().map(GeoSearcher.Hit::getId).collect(Collectors.toList()));
+        }
+        //加载次数远少于请求次数
+        assertTrue(loads.get() - loaded < 100, "loads=" + (loads.get() - loaded));
+    }
+
+    @Test
+    void sparseAreaIsCompleteTest() {
+        shops.add(new GeoResultCache.Candidate(1L, X + 0.01, Y));
+        shops.add(new GeoResultCache.Candidate(2L, X - 0.03, Y));
+        shops.add(new GeoResultCache.Candidate(3L, X + 0.2, Y));
+        GeoResultCache cache = new GeoResultCache(true, 100, 60000, 20, 1000, 1 << 20);
+        List<GeoSearcher.Hit> hits = cache.nearest(1, X, Y, 5000, 5, this::load);
+        assertEquals(2, hits.size());
+        assertEquals(1L, hits.get(0).getId());
+        assertEquals(GeoHash.distance(X, Y, X + 0.01, Y), hits.get(0).getDistance(), 1e-6);
+        //不同类型不共用
+        cache.nearest(2, X, Y, 5000, 5, this::load);
+        assertEquals(2, loads.get());
+        //关闭时直接返回 null
+        assertNull(new GeoResultCache(false, 100, 60000, 20, 1000, 1 << 20).nearest(1, X, Y, 5000, 5, this::load));
+    }
+}
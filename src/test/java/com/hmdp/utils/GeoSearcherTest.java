@@ -0,0 +1,36 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoSearcherTest {
+
+    private final GeoSearcher searcher = new GeoSearcher();
+
+    private static boolean covered(List<long[]> ranges, double lon, double lat) {
+        long score = GeoHash.encode(lon, lat, GeoHash.MAX_STEP);
+        return ranges.stream().anyMatch(r -> score >= r[0] && score < r[1]);
+    }
+
+    @Test
+    void ringRangesTest() {
+        double x = 120.149192, y = 30.316078;
+        List<long[]> ranges = searcher.ringRanges(x, y, 2000, 2500);
+        //环上的点都在某个区间内
+        for (int deg = 0; deg < 360; deg += 15) {
+            double r = 2250;
+            double lon = x + GeoHash.lonDegrees(r * Math.cos(Math.toRadians(deg)), y);
+            double lat = y + GeoHash.latDegrees(r * Math.sin(Math.toRadians(deg)));
+            assertTrue(covered(ranges, lon, lat), "deg=" + deg);
+        }
+        //中心附近（完全在内圈里）不会被读到
+        assertFalse(covered(ranges, x, y));
+        //区间已排序且互不相邻
+        for (int i = 1; i < ranges.size(); i++) {
+            assertTrue(ranges.get(i)[0] > ranges.get(i - 1)[1]);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyDetectorTest {
+
+    private final HotKeyDetector detector = new HotKeyDetector(1024, 100, 2, 1000);
+
+    @Test
+    void detectHotKeyTest() {
+        for (int i = 0; i < 1000; i++) {
+            detector.record("cache:shop:" + i);
+        }
+        //前面已经访问过 1 次，第 100 次访问时成为热点
+        for (int i = 0; i < 98; i++) {
+            assertFalse(detector.record("cache:shop:1"));
+        }
+        assertTrue(detector.record("cache:shop:1"));
+        assertFalse(detector.isHot("cache:shop:2"));
+        assertEquals("cache:shop:1", detector.hotKeys().get(0).get("key"));
+    }
+
+    @Test
+    void topKTest() {
+        for (int i = 0; i < 300; i++) {
+            detector.record("a");
+        }
+        for (int i = 0; i < 200; i++) {
+            detector.record("b");
+            detector.record("c");
+        }
+        for (int i = 0; i < 50; i++) {
+            detector.record("c");
+        }
+        assertEquals(2, detector.hotKeys().size());
+        assertTrue(detector.isHot("a"));
+        assertTrue(detector.isHot("c"));
+    }
+
+    @Test
+    void noChurnAtBoundaryTest() {
+        for (int i = 0; i < 300; i++) {
+            detector.record("a");
+        }
+        for (int i = 0; i < 100; i++) {
+            detector.record("b");
+        }
+        //c 和 b 差不多热：c 超过阈值但没有明显超过最冷的 b，不替换
+        for (int i = 0; i < 110; i++) {
+            detector.record("c");
+        }
+        assertFalse(detector.isHot("c"));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(detector.record("b"));
+            detector.record("c");
+        }
+        assertTrue(detector.isHot("b"));
+        assertFalse(detector.isHot("c"));
+        //明显更热时才替换最冷的热点
+        for (int i = 0; i < 10; i++) {
+            detector.record("c");
+        }
+        assertTrue(detector.isHot("c"));
+        assertFalse(detector.isHot("b"));
+    }
+
+    @Test
+    void decayTest() {
+        for (int i = 0; i < 150; i++) {
+            detector.record("cache:shop:1");
+        }
+        assertTrue(detector.isHot("cache:shop:1"));
+        detector.decay();
+        assertTrue(detector.isHot("cache:shop:1"));
+        detector.decay();
+        detector.decay();
+        assertFalse(detector.isHot("cache:shop:1"));
+        assertTrue(detector.estimate("cache:shop:1") < 100);
+    }
+}
@@ -0,0 +1,22 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HydratorTest {
+
+    @Test
+    void reorderTest() {
+        List<Long> ids = Arrays.asList(4L, 6L, 3L, 2L, 9L);
+        //查库结果按主键顺序返回，且 9 不存在、多了一个不相关的 7
+        List<long[]> rows = Arrays.asList(new long[]{2}, new long[]{3}, new long[]{4}, new long[]{6}, new long[]{7});
+        List<long[]> ordered = Hydrator.reorder(ids, rows, r -> r[0]);
+        assertArrayEquals(new long[]{4, 6, 3, 2}, ordered.stream().mapToLong(r -> r[0]).toArray());
+        assertTrue(Hydrator.reorder(ids, Collections.<long[]>emptyList(), r -> r[0]).isEmpty());
+    }
+}
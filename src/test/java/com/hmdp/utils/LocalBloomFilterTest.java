@@ -0,0 +1,36 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalBloomFilterTest {
+
+    @Test
+    void notReadyTest() {
+        //加载完成前不拦截
+        LocalBloomFilter filter = new LocalBloomFilter(1000, 0.01);
+        assertTrue(filter.mightContain(1L));
+    }
+
+    @Test
+    void mightContainTest() {
+        LocalBloomFilter filter = new LocalBloomFilter(10000, 0.01);
+        for (long id = 1; id <= 10000; id++) {
+            filter.put(id);
+        }
+        filter.markReady();
+        for (long id = 1; id <= 10000; id++) {
+            assertTrue(filter.mightContain(id));
+        }
+        //误判率大致在设定值附近
+        int falsePositives = 0;
+        for (long id = 10001; id <= 20000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        System.out.println("falsePositives=" + falsePositives);
+        assertTrue(falsePositives < 300);
+    }
+}
@@ -0,0 +1,38 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalCacheTest {
+
+    @Test
+    void putAndGetTest() {
+        LocalCache cache = new LocalCache(1024 * 16);
+        cache.put("cache:shop:1", "shop1", 10, 10_000);
+        assertEquals("shop1", cache.get("cache:shop:1"));
+        cache.invalidate("cache:shop:1");
+        assertNull(cache.get("cache:shop:1"));
+    }
+
+    @Test
+    void expireTest() throws InterruptedException {
+        LocalCache cache = new LocalCache(1024 * 16);
+        cache.put("cache:shop:1", "shop1", 10, 20);
+        Thread.sleep(50);
+        assertNull(cache.get("cache:shop:1"));
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    void evictByWeightTest() {
+        //16个分段，每段权重上限 100
+        LocalCache cache = new LocalCache(16 * 100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("cache:shop:" + i, i, 10, 10_000);
+        }
+        assertTrue(cache.weight() <= 16 * 100);
+        //最后写入的还在
+        assertEquals(999, cache.get("cache:shop:999"));
+    }
+}
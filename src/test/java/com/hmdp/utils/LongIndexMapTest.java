@@ -0,0 +1,39 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIndexMapTest {
+
+    @Test
+    void matchesHashMapTest() {
+        LongIndexMap map = new LongIndexMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            //自增 id、负数、大数混在一起，并且有重复
+            long key = i % 3 == 0 ? i : i % 3 == 1 ? -random.nextInt(5000) : random.nextLong();
+            Integer old = expected.putIfAbsent(key, i);
+            assertEquals(old == null ? -1 : old, map.putIfAbsent(key, i));
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((k, v) -> assertEquals(v, map.get(k)));
+        assertEquals(-1, map.get(Long.MIN_VALUE + 7));
+    }
+
+    @Test
+    void ofKeepsFirstIndexTest() {
+        LongIndexMap map = LongIndexMap.of(Arrays.asList(5L, 3L, 5L, 0L));
+        assertEquals(0, map.get(5));
+        assertEquals(1, map.get(3));
+        assertEquals(3, map.get(0));
+        assertEquals(-1, map.get(4));
+        assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(9, -2));
+    }
+}
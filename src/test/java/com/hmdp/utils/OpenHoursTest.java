@@ -0,0 +1,36 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenHoursTest {
+
+    private static int at(int hour, int minute) {
+        return hour * 60 + minute;
+    }
+
+    @Test
+    void sameDayTest() {
+        assertTrue(OpenHours.isOpen("10:00-22:00", at(10, 0)));
+        assertTrue(OpenHours.isOpen("10:00-22:00", at(21, 59)));
+        assertFalse(OpenHours.isOpen("10:00-22:00", at(22, 0)));
+        assertFalse(OpenHours.isOpen("10:00-22:00", at(9, 30)));
+        assertTrue(OpenHours.isOpen("00:00-24:00", at(23, 59)));
+    }
+
+    @Test
+    void overnightAndMultiRangeTest() {
+        assertTrue(OpenHours.isOpen("11:30-03:00", at(1, 0)));
+        assertTrue(OpenHours.isOpen("11:30-03:00", at(23, 0)));
+        assertFalse(OpenHours.isOpen("11:30-03:00", at(5, 0)));
+        assertTrue(OpenHours.isOpen("11:00-13:50,17:00-20:50", at(18, 0)));
+        assertFalse(OpenHours.isOpen("11:00-13:50,17:00-20:50", at(15, 0)));
+    }
+
+    @Test
+    void unknownFormatTest() {
+        assertTrue(OpenHours.isOpen(null, at(3, 0)));
+        assertTrue(OpenHours.isOpen("全天", at(3, 0)));
+    }
+}
@@ -0,0 +1,41 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.SeckillVoucher;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeckillGateTest {
+
+    @Test
+    void soldOutFlagTest() throws InterruptedException {
+        SeckillGate gate = new SeckillGate(50, 60000);
+        assertFalse(gate.isSoldOut(1L));
+        assertTrue(gate.markLocally(1L));
+        assertFalse(gate.markLocally(1L));
+        assertTrue(gate.isSoldOut(1L));
+        assertFalse(gate.isSoldOut(2L));
+        //过期后只放一个请求去确认
+        Thread.sleep(60);
+        assertFalse(gate.isSoldOut(1L));
+        assertTrue(gate.isSoldOut(1L));
+        //确认还有库存后清除
+        gate.markAvailable(1L);
+        assertFalse(gate.isSoldOut(1L));
+    }
+
+    @Test
+    void windowIsCachedTest() {
+        SeckillGate gate = new SeckillGate(10000, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        SeckillVoucher voucher = new SeckillVoucher().setVoucherId(1L);
+        assertSame(voucher, gate.window(1L, id -> { loads.incrementAndGet(); return voucher; }));
+        assertSame(voucher, gate.window(1L, id -> { loads.incrementAndGet(); return voucher; }));
+        //不存在的也缓存
+        assertNull(gate.window(2L, id -> { loads.incrementAndGet(); return null; }));
+        assertNull(gate.window(2L, id -> { loads.incrementAndGet(); return null; }));
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,50 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeckillShardsTest {
+
+    @Test
+    void splitTest() {
+        assertArrayEquals(new int[]{4, 3, 3}, SeckillShards.split(10, 3));
+        assertArrayEquals(new int[]{1, 1, 0, 0}, SeckillShards.split(2, 4));
+        assertEquals(100000, Arrays.stream(SeckillShards.split(100000, 7)).sum());
+    }
+
+    @Test
+    void homeIsStableAndSpreadTest() {
+        SeckillShards shards = new SeckillShards(8);
+        int[] counts = new int[8];
+        //自增的用户id也要均匀分布
+        for (long userId = 1; userId <= 80000; userId++) {
+            int home = shards.home(userId);
+            assertEquals(home, shards.home(userId));
+            counts[home]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - 10000) < 500, "count=" + count);
+        }
+    }
+
+    @Test
+    void keysShareHashTagTest() {
+        SeckillShards shards = new SeckillShards(4);
+        assertEquals("seckill:stock:{2}:10", shards.stockKey(10L, 2));
+        assertEquals("seckill:order:{2}:10", shards.orderKey(10L, 2));
+        assertEquals("stream.orders:{2}", shards.streamKey(2));
+        assertEquals("icr:order:{2}:20240825",
+                RedisIdWorker.counterKey(shards.idKeyPrefix(2), LocalDateTime.of(2024, 8, 25, 0, 0)));
+        assertEquals(4, shards.stockKeys(10L).size());
+        //不分片时沿用原来的 key
+        SeckillShards off = new SeckillShards(0);
+        assertFalse(off.isEnabled());
+        assertEquals(Collections.singletonList("seckill:stock:10"), off.stockKeys(10L));
+        assertEquals(Collections.singletonList("stream.orders"), off.streams());
+    }
+}
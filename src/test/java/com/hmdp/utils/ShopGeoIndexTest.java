@@ -0,0 +1,58 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShopGeoIndexTest {
+
+    private static final double X = 120.149192, Y = 30.316078;
+
+    @Test
+    void nearestMatchesBruteForceTest() {
+        ShopGeoIndex index = new ShopGeoIndex(500);
+        Random random = new Random(42);
+        double[][] points = new double[2000][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[]{X + (random.nextDouble() - 0.5) * 0.2, Y + (random.nextDouble() - 0.5) * 0.2};
+            index.put(i + 1, i % 2 + 1, points[i][0], points[i][1]);
+        }
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < points.length; i++) {
+            double d = GeoHash.distance(X, Y, points[i][0], points[i][1]);
+            if (i % 2 == 0 && d <= 5000) {
+                expected.add((long) i + 1);
+            }
+        }
+        expected.sort((a, b) -> Double.compare(
+                GeoHash.distance(X, Y, points[(int) (a - 1)][0], points[(int) (a - 1)][1]),
+                GeoHash.distance(X, Y, points[(int) (b - 1)][0], points[(int) (b - 1)][1])));
+        List<Long> actual = index.nearest(1, X, Y, 5000, 20).stream()
+                .map(GeoSearcher.Hit::getId).collect(Collectors.toList());
+        assertEquals(expected.subList(0, 20), actual);
+        assertEquals(expected.size(), index.searchRing(1, X, Y, 0, Math.nextUp(5000.0)).size());
+    }
+
+    @Test
+    void moveAndRemoveTest() {
+        ShopGeoIndex index = new ShopGeoIndex(500);
+        index.put(1, 1, X, Y);
+        index.put(2, 1, X + 0.001, Y);
+        assertEquals(2, index.nearest(1, X, Y, 1000, 10).size());
+        //移动到很远的地方
+        index.put(1, 1, X + 1, Y);
+        assertEquals(1, index.nearest(1, X, Y, 1000, 10).size());
+        //修改类型
+        index.put(2, 3, X + 0.001, Y);
+        assertTrue(index.nearest(1, X, Y, 1000, 10).isEmpty());
+        assertEquals(2L, index.nearest(3, X, Y, 1000, 10).get(0).getId());
+        index.remove(2);
+        assertTrue(index.nearest(3, X, Y, 1000, 10).isEmpty());
+        assertEquals(1, index.size());
+    }
+}
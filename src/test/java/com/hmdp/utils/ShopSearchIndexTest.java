@@ -0,0 +1,71 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShopSearchIndexTest {
+
+    private ShopSearchIndex index() {
+        ShopSearchIndex index = new ShopSearchIndex();
+        index.put(1, "103茶餐厅", "大关", "金华路锦昌文华苑29号");
+        index.put(2, "蔡馬洪涛烤肉·老北京铜锅涮羊肉", "拱宸桥/上塘", "上塘路1035号（中国工商银行旁）");
+        index.put(3, "新白鹿餐厅(运河上街店)", "运河上街", "台州路2号运河上街购物中心F5");
+        index.put(4, "Mamala(杭州远洋乐堤港店)", "拱宸桥/上塘", "丽水路58号远洋乐堤港F4");
+        return index;
+    }
+
+    @Test
+    void searchTest() {
+        ShopSearchIndex index = index();
+        assertEquals(Arrays.asList(1L, 3L), index.search("餐厅", 0, 10));
+        assertEquals(Collections.singletonList(1L), index.search("茶餐厅", 0, 10));
+        //名称开头的排在前面，商圈、地址匹配的排在后面
+        assertEquals(Arrays.asList(3L, 2L, 4L), index.search("上", 0, 10));
+        assertEquals(Collections.singletonList(4L), index.search("mama", 0, 10));
+        //两字都出现但不相邻，不算匹配
+        assertTrue(index.search("茶厅", 0, 10).isEmpty());
+    }
+
+    @Test
+    void prefixRankAndPagingTest() {
+        ShopSearchIndex index = index();
+        index.put(5, "餐厅老店", "", "");
+        assertEquals(Arrays.asList(5L, 1L, 3L), index.search("餐厅", 0, 10));
+        assertEquals(Collections.singletonList(1L), index.search("餐厅", 1, 1));
+        assertTrue(index.search("餐厅", 3, 10).isEmpty());
+    }
+
+    @Test
+    void updateAndRemoveTest() {
+        ShopSearchIndex index = index();
+        index.put(1, "103奶茶", "大关", "金华路");
+        assertEquals(Collections.singletonList(3L), index.search("餐厅", 0, 10));
+        assertEquals(Collections.singletonList(1L), index.search("奶茶", 0, 10));
+        index.remove(1);
+        assertTrue(index.search("奶茶", 0, 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void bulkLoadTest() {
+        ShopSearchIndex index = new ShopSearchIndex();
+        index.bulkPut(3, "新白鹿餐厅(运河上街店)", "运河上街", "台州路2号运河上街购物中心F5");
+        index.bulkPut(1, "103茶餐厅", "大关", "金华路锦昌文华苑29号");
+        index.bulkPut(2, "蔡馬洪涛烤肉", "拱宸桥/上塘", "上塘路1035号");
+        //加载期间的增量修改
+        index.put(4, "餐厅老店", "", "");
+        index.remove(2);
+        index.markReady();
+        assertTrue(index.isReady());
+        assertEquals(Arrays.asList(4L, 1L, 3L), index.search("餐厅", 0, 10));
+        assertTrue(index.search("烤肉", 0, 10).isEmpty());
+        //加载完成后的增量修改
+        index.put(1, "103奶茶", "大关", "金华路");
+        assertEquals(Arrays.asList(4L, 3L), index.search("餐厅", 0, 10));
+        assertEquals(3, index.size());
+    }
+}